@@ -0,0 +1,321 @@
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sound effects driven by the same gameplay events as EventLog.
+ *
+ * All clips are synthesised into 16-bit PCM buffers when the engine starts, so nothing is
+ * decoded or allocated while playing. The game thread only posts an int command into a
+ * preallocated single-producer ring. A dedicated mixer thread drains the commands, mixes
+ * the active voices into BLOCK_FRAMES-sized blocks and writes each block to the sink. A
+ * SourceDataLine sink keeps only a few blocks buffered, so a sound starts within a few
+ * milliseconds of its event. The null sink paces itself with the clock instead, so the
+ * engine also runs headless and in tests with no audio device.
+ */
+class AudioEngine implements AutoCloseable {
+
+    static final float SAMPLE_RATE = 44_100f;
+    static final int BLOCK_FRAMES = 256;       // ~5.8 ms per block
+    private static final int LINE_BLOCKS = 3;  // Blocks the audio device may buffer ahead of us
+    private static final int VOICES = 8;
+    private static final int COMMAND_RING = 256;
+
+    // Clips
+    private static final int WAKA_A = 0;
+    private static final int WAKA_B = 1;
+    private static final int PELLET = 2;
+    private static final int SIREN = 3;
+    private static final int GHOST_EATEN = 4;
+    private static final int DEATH = 5;
+    private static final int LEVEL_CLEAR = 6;
+    private static final int N_CLIPS = 7;
+
+    // Commands: op in the high byte, clip in the low byte
+    private static final int PLAY = 0;
+    private static final int LOOP = 1 << 8;
+    private static final int STOP = 2 << 8;
+    private static final int STOP_ALL = 3 << 8;
+
+    /** Where mixed blocks go. write() is expected to block for about one block's duration. */
+    interface Sink {
+        void write(byte[] block, int length);
+        void close();
+    }
+
+    // Discards audio but keeps real-time pacing, for headless runs and tests
+    static final class NullSink implements Sink {
+        private final long blockNanos = (long) (BLOCK_FRAMES * 1e9 / SAMPLE_RATE);
+        private long next = System.nanoTime();
+        long blocksWritten;
+
+        @Override
+        public void write(byte[] block, int length) {
+            blocksWritten++;
+            next += blockNanos;
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            } else if (wait < -blockNanos * LINE_BLOCKS) {
+                next = System.nanoTime(); // Fell behind (e.g. suspended); don't try to catch up
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    static final class LineSink implements Sink {
+        private final SourceDataLine line;
+
+        LineSink(AudioFormat format) throws LineUnavailableException {
+            line = AudioSystem.getSourceDataLine(format);
+            line.open(format, BLOCK_FRAMES * format.getFrameSize() * LINE_BLOCKS);
+            line.start();
+        }
+
+        @Override
+        public void write(byte[] block, int length) {
+            line.write(block, 0, length);
+        }
+
+        @Override
+        public void close() {
+            line.stop();
+            line.close();
+        }
+    }
+
+    private final Sink sink;
+    private final short[][] clips = new short[N_CLIPS][];
+
+    // Command ring, game thread -> mixer
+    private final int[] commands = new int[COMMAND_RING];
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private long tailCache;
+
+    // Mixer state, only touched by the mixer thread
+    private final int[] voiceClip = new int[VOICES];
+    private final int[] voicePos = new int[VOICES];
+    private final boolean[] voiceLoop = new boolean[VOICES];
+    private final int[] mix = new int[BLOCK_FRAMES];
+    private final byte[] block = new byte[BLOCK_FRAMES * 2];
+    private boolean wakaToggle;
+
+    private final Thread mixer;
+    private volatile boolean closing;
+
+    AudioEngine(Sink sink) {
+        this.sink = sink;
+        synthesizeClips();
+        Arrays.fill(voiceClip, -1);
+        mixer = new Thread(this::mixLoop, "audio-mixer");
+        mixer.setDaemon(true);
+        mixer.setPriority(Thread.MAX_PRIORITY);
+        mixer.start();
+    }
+
+    // Plays on the default audio device, or silently if there is none
+    static AudioEngine open() {
+        AudioFormat format = new AudioFormat(SAMPLE_RATE, 16, 1, true, false);
+        try {
+            return new AudioEngine(new LineSink(format));
+        } catch (LineUnavailableException | IllegalArgumentException e) {
+            System.err.println("No audio device, sound disabled: " + e.getMessage());
+            return new AudioEngine(new NullSink());
+        }
+    }
+
+    /** Maps a gameplay event (EventLog type) to sound. Game thread only; never blocks or allocates. */
+    void onEvent(int type) {
+        switch (type) {
+            case EventLog.DOT_EATEN:
+                post(PLAY | WAKA_A);
+                break;
+            case EventLog.PELLET_EATEN:
+                post(PLAY | PELLET);
+                break;
+            case EventLog.FRIGHTENED_START:
+                post(STOP | SIREN);
+                post(LOOP | SIREN);
+                break;
+            case EventLog.FRIGHTENED_END:
+                post(STOP | SIREN);
+                break;
+            case EventLog.GHOST_EATEN:
+                post(PLAY | GHOST_EATEN);
+                break;
+            case EventLog.PACMAN_DEATH:
+                post(STOP_ALL);
+                post(PLAY | DEATH);
+                break;
+            case EventLog.LEVEL_COMPLETE:
+                post(STOP_ALL);
+                post(PLAY | LEVEL_CLEAR);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /** Silences everything, e.g. when a game is abandoned mid-sound. Game thread only. */
+    void stopAll() {
+        post(STOP_ALL);
+    }
+
+    private void post(int command) {
+        long h = head.get();
+        if (h - tailCache >= COMMAND_RING) {
+            tailCache = tail.get();
+            if (h - tailCache >= COMMAND_RING) {
+                return; // Mixer is stalled; a dropped sound beats a stalled tick
+            }
+        }
+        commands[(int) (h % COMMAND_RING)] = command;
+        head.lazySet(h + 1);
+    }
+
+    @Override
+    public void close() {
+        closing = true;
+        try {
+            mixer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sink.close();
+    }
+
+    private void mixLoop() {
+        while (!closing) {
+            long t = tail.get();
+            long h = head.get();
+            for (; t < h; t++) {
+                apply(commands[(int) (t % COMMAND_RING)]);
+            }
+            tail.lazySet(t);
+
+            mixBlock();
+            sink.write(block, block.length);
+        }
+    }
+
+    private void apply(int command) {
+        int op = command & 0xFF00;
+        int clip = command & 0xFF;
+        if (op == STOP_ALL) {
+            Arrays.fill(voiceClip, -1);
+            return;
+        }
+        if (op == STOP) {
+            for (int v = 0; v < VOICES; v++) {
+                if (voiceClip[v] == clip) {
+                    voiceClip[v] = -1;
+                }
+            }
+            return;
+        }
+        if (clip == WAKA_A) {
+            clip = wakaToggle ? WAKA_B : WAKA_A; // Alternate "wa" and "ka" on successive dots
+            wakaToggle = !wakaToggle;
+        }
+        // Free voice if there is one, otherwise the one closest to finishing
+        int voice = 0;
+        int bestLeft = Integer.MAX_VALUE;
+        for (int v = 0; v < VOICES; v++) {
+            if (voiceClip[v] < 0) {
+                voice = v;
+                break;
+            }
+            int left = voiceLoop[v] ? Integer.MAX_VALUE - 1 : clips[voiceClip[v]].length - voicePos[v];
+            if (left < bestLeft) {
+                bestLeft = left;
+                voice = v;
+            }
+        }
+        voiceClip[voice] = clip;
+        voicePos[voice] = 0;
+        voiceLoop[voice] = op == LOOP;
+    }
+
+    private void mixBlock() {
+        Arrays.fill(mix, 0);
+        for (int v = 0; v < VOICES; v++) {
+            if (voiceClip[v] < 0) {
+                continue;
+            }
+            short[] clip = clips[voiceClip[v]];
+            int pos = voicePos[v];
+            for (int i = 0; i < BLOCK_FRAMES; i++) {
+                if (pos >= clip.length) {
+                    if (!voiceLoop[v]) {
+                        voiceClip[v] = -1;
+                        break;
+                    }
+                    pos = 0;
+                }
+                mix[i] += clip[pos++];
+            }
+            voicePos[v] = pos;
+        }
+        for (int i = 0; i < BLOCK_FRAMES; i++) {
+            int s = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, mix[i]));
+            block[i * 2] = (byte) s;
+            block[i * 2 + 1] = (byte) (s >> 8);
+        }
+    }
+
+    // Simple arcade-style tones; there are no audio assets in the project
+    private void synthesizeClips() {
+        clips[WAKA_A] = sweep(0.07, 300, 600, 0.35);
+        clips[WAKA_B] = sweep(0.07, 600, 300, 0.35);
+        clips[PELLET] = sweep(0.15, 200, 120, 0.4);
+        clips[GHOST_EATEN] = sweep(0.3, 200, 1200, 0.35);
+        clips[DEATH] = sweep(1.2, 900, 100, 0.4);
+
+        // Siren: square wave wobbling around 350 Hz; length is a whole number of wobbles so it loops cleanly
+        int n = (int) (SAMPLE_RATE * 0.4);
+        short[] siren = new short[n];
+        double phase = 0;
+        for (int i = 0; i < n; i++) {
+            double freq = 350 + 80 * Math.sin(2 * Math.PI * i / n * 4);
+            phase += freq / SAMPLE_RATE;
+            siren[i] = (short) ((phase % 1 < 0.5 ? 1 : -1) * 0.15 * Short.MAX_VALUE);
+        }
+        clips[SIREN] = siren;
+
+        // Level clear: rising arpeggio
+        double[] notes = {523.25, 659.25, 783.99, 1046.5};
+        int noteLen = (int) (SAMPLE_RATE * 0.15);
+        short[] clear = new short[noteLen * notes.length];
+        for (int k = 0; k < notes.length; k++) {
+            for (int i = 0; i < noteLen; i++) {
+                double env = 1 - (double) i / noteLen;
+                clear[k * noteLen + i] = (short) (Math.sin(2 * Math.PI * notes[k] * i / SAMPLE_RATE)
+                        * env * 0.35 * Short.MAX_VALUE);
+            }
+        }
+        clips[LEVEL_CLEAR] = clear;
+    }
+
+    // Triangle wave gliding from one frequency to another, with a short fade out
+    private static short[] sweep(double seconds, double fromHz, double toHz, double volume) {
+        int n = (int) (SAMPLE_RATE * seconds);
+        short[] out = new short[n];
+        double phase = 0;
+        for (int i = 0; i < n; i++) {
+            double t = (double) i / n;
+            phase += (fromHz + (toHz - fromHz) * t) / SAMPLE_RATE;
+            double tri = 4 * Math.abs(phase % 1 - 0.5) - 1;
+            double env = Math.min(1, (1 - t) * 8);
+            out[i] = (short) (tri * env * volume * Short.MAX_VALUE);
+        }
+        return out;
+    }
+}
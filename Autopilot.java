@@ -0,0 +1,751 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Built-in bot that drives Pac-Man through the same reqDX/reqDY fields the keyboard uses.
+ *
+ * Every tick runs an iterative-deepening expectimax search over a copy of the board. Pac-Man's
+ * moves are max nodes; ghosts follow the rules in Board.moveGhosts, heading for the same
+ * GhostTargeting targets, with the random tie-breaks of the chase rule treated as chance
+ * nodes. The first ply is fanned out over a ForkJoinPool, the search is cut off at a hard
+ * deadline, and results are shared between threads and ticks through a lock-free
+ * transposition table keyed by a Zobrist hash of the board state.
+ */
+class Autopilot {
+
+    // Direction order matches the Left/Right/Up/Down checks in Board.moveGhosts
+    static final int[] DIR_X = {-1, 1, 0, 0};
+    static final int[] DIR_Y = {0, 0, -1, 1};
+    private static final int NO_DIR = 4;
+
+    // Cell codes, same as Board.screenData
+    private static final byte DOT = 0;
+    private static final byte WALL = 1;
+    private static final byte PELLET = 2;
+    private static final byte EMPTY = 16;
+
+    // Rewards mirror checkMaze and moveGhosts
+    private static final double DOT_REWARD = 10;
+    private static final double PELLET_REWARD = 50;
+    private static final double GHOST_REWARD = 200;
+    private static final double DEATH_PENALTY = -10_000;
+    private static final double CLEAR_BONUS = 5_000;
+
+    private static final int MAX_DEPTH = 24;
+    private static final int MAX_CHANCE_BRANCHES = 8; // Joint ghost outcomes kept per chance node
+    private static final int DANGER_RADIUS = 4;       // Path distance at which ghosts start to matter
+    private static final int DEADLINE_CHECK_MASK = 0xFF;
+    private static final int TT_BITS = 18;
+
+    private final int nGhosts;
+    private int frightenedDuration;
+    private final int[] targeting;      // Board's ghost personalities, copied each tick
+    private final ForkJoinPool pool;
+
+    // Maze layout, set once per level
+    private int rows, cols;
+    private int[] spawnX, spawnY;
+
+    // Zobrist keys
+    private long[] pacPosKey, dotKey, timerKey;
+    private long[][] ghostPosKey, ghostDirKey;
+    private long[] pacDirKey, ghostFrightKey;
+    private long scatterKey;
+
+    // Transposition table; each slot stores (hash ^ data, data) so torn writes are detected
+    private final long[] ttKeys = new long[1 << TT_BITS];
+    private final long[] ttData = new long[1 << TT_BITS];
+
+    // Worker 0 expands the first ply on the calling thread, the rest search its children
+    private final List<Worker> workers = new ArrayList<>();
+    private final List<RootChild> children = new ArrayList<>();
+    private final double[] actionBase = new double[4];
+    private final boolean[] actionLive = new boolean[4];
+    private volatile long deadline;
+
+    Autopilot(int nGhosts) {
+        this.nGhosts = nGhosts;
+        this.targeting = GhostTargeting.defaults(nGhosts);
+        this.pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    // Stops the search threads; the autopilot can't be used afterwards
+    void close() {
+        pool.shutdownNow();
+    }
+
+    // Must be called whenever a new maze is loaded; spawns are found the same way as in Board
+    void setMaze(String[] levelData, int frightenedDuration) {
+        this.frightenedDuration = frightenedDuration;
+        rows = levelData.length;
+        cols = levelData[0].length();
+        spawnX = new int[nGhosts];
+        spawnY = new int[nGhosts];
+        int ghostCount = 0;
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                if (levelData[r].charAt(c) == 'G' && ghostCount < nGhosts) {
+                    spawnX[ghostCount] = c;
+                    spawnY[ghostCount] = r;
+                    ghostCount++;
+                }
+            }
+        }
+        for (int g = ghostCount; g < nGhosts && ghostCount > 0; g++) {
+            spawnX[g] = spawnX[g % ghostCount];
+            spawnY[g] = spawnY[g % ghostCount];
+        }
+
+        int n = rows * cols;
+        SplittableRandom keys = new SplittableRandom(0x9E3779B97F4A7C15L);
+        pacPosKey = randomKeys(keys, n);
+        dotKey = randomKeys(keys, n);
+        timerKey = randomKeys(keys, frightenedDuration + 1);
+        pacDirKey = randomKeys(keys, NO_DIR + 1);
+        ghostFrightKey = randomKeys(keys, nGhosts);
+        scatterKey = keys.nextLong();
+        ghostPosKey = new long[nGhosts][];
+        ghostDirKey = new long[nGhosts][];
+        for (int g = 0; g < nGhosts; g++) {
+            ghostPosKey[g] = randomKeys(keys, n);
+            ghostDirKey[g] = randomKeys(keys, NO_DIR + 1);
+        }
+
+        Arrays.fill(ttKeys, 0L);
+        Arrays.fill(ttData, 0L);
+        workers.clear();
+    }
+
+    private static long[] randomKeys(SplittableRandom keys, int count) {
+        long[] out = new long[count];
+        for (int i = 0; i < count; i++) {
+            out[i] = keys.nextLong();
+        }
+        return out;
+    }
+
+    /**
+     * Picks the direction to request this tick, or -1 if there is nothing to decide.
+     * Returns once the search has used up budgetNanos, or earlier if the next depth
+     * would not fit.
+     */
+    int chooseDirection(short[][] screenData, int pacmanX, int pacmanY, int pacmanDX, int pacmanDY,
+                        int[] ghostX, int[] ghostY, int[] ghostDX, int[] ghostDY,
+                        boolean[] ghostFrightened, int frightenedTimer,
+                        int[] ghostTargeting, int phaseTicks, long budgetNanos) {
+        deadline = System.nanoTime() + budgetNanos;
+        System.arraycopy(ghostTargeting, 0, targeting, 0, nGhosts);
+
+        Worker planner = worker(0);
+        planner.load(screenData, pacmanX, pacmanY, pacmanDX, pacmanDY,
+                     ghostX, ghostY, ghostDX, ghostDY, ghostFrightened, frightenedTimer, phaseTicks);
+        expandRoot(planner);
+
+        List<Callable<Void>> tasks = new ArrayList<>(children.size());
+        int bestAction = -1;
+        for (int depth = 1; depth <= MAX_DEPTH; depth++) {
+            long iterationStart = System.nanoTime();
+            final int remaining = depth - 1;
+
+            tasks.clear();
+            for (RootChild child : children) {
+                if (!child.terminal) {
+                    Worker w = child.worker;
+                    tasks.add(() -> {
+                        w.result = w.search(w.root, 1, remaining);
+                        return null;
+                    });
+                }
+            }
+            if (tasks.isEmpty() && depth > 1) {
+                break;
+            }
+            pool.invokeAll(tasks);
+
+            boolean aborted = false;
+            double[] value = actionBase.clone();
+            for (RootChild child : children) {
+                double childValue;
+                if (child.terminal) {
+                    childValue = CLEAR_BONUS;
+                } else {
+                    aborted |= child.worker.aborted;
+                    childValue = child.worker.result;
+                }
+                value[child.action] += child.prob * (child.reward + childValue);
+            }
+            if (aborted) {
+                break; // Keep the answer from the last depth that finished in time
+            }
+
+            bestAction = -1;
+            for (int a = 0; a < 4; a++) {
+                if (actionLive[a] && (bestAction < 0 || value[a] > value[bestAction])) {
+                    bestAction = a;
+                }
+            }
+
+            // Stop early when the next, deeper iteration clearly cannot finish in time
+            long now = System.nanoTime();
+            if (now + (now - iterationStart) * 3 > deadline) {
+                break;
+            }
+        }
+        return bestAction;
+    }
+
+    // Runs the first ply on the calling thread and hands each chance outcome to its own worker
+    private void expandRoot(Worker planner) {
+        children.clear();
+        Arrays.fill(actionBase, 0);
+        Arrays.fill(actionLive, false);
+
+        State root = planner.root;
+        int[] actions = planner.actions[0];
+        int nActions = planner.distinctActions(root, 0);
+        for (int i = 0; i < nActions; i++) {
+            int a = actions[i];
+            actionLive[a] = true;
+            State m = planner.mid[0];
+            m.copyFrom(root);
+            planner.movePacman(m, a);
+            double collisionReward = planner.resolveCollisions(m);
+            if (m.dead) {
+                actionBase[a] = DEATH_PENALTY;
+                continue;
+            }
+            planner.collectGhostOptions(m, 0);
+            int[] choice = planner.choice[0];
+            Arrays.fill(choice, 0);
+            State n = planner.next[0];
+            do {
+                double p = planner.applyGhostChoice(m, n, 0);
+                double r = planner.checkMaze(n);
+                Worker w = worker(children.size() + 1);
+                w.loadFrom(planner, n);
+                children.add(new RootChild(a, p, collisionReward + r, n.dotsLeft == 0, w));
+                planner.undoEat(n);
+            } while (planner.advanceChoice(0));
+        }
+    }
+
+    private Worker worker(int index) {
+        while (workers.size() <= index) {
+            workers.add(new Worker());
+        }
+        return workers.get(index);
+    }
+
+    private long probe(long hash, int remaining) {
+        int slot = (int) (hash >>> (64 - TT_BITS));
+        long data = ttData[slot];
+        if ((ttKeys[slot] ^ data) == hash && (int) (data & 0xFF) >= remaining) {
+            return data;
+        }
+        return 0L;
+    }
+
+    private void store(long hash, int remaining, double value) {
+        int slot = (int) (hash >>> (64 - TT_BITS));
+        long data = ((long) Float.floatToIntBits((float) value) << 32) | remaining;
+        ttKeys[slot] = hash ^ data;
+        ttData[slot] = data;
+    }
+
+    private static int dirIndex(int dx, int dy) {
+        for (int d = 0; d < 4; d++) {
+            if (DIR_X[d] == dx && DIR_Y[d] == dy) {
+                return d;
+            }
+        }
+        return NO_DIR;
+    }
+
+    private static final class RootChild {
+        final int action;
+        final double prob;
+        final double reward;
+        final boolean terminal;
+        final Worker worker;
+
+        RootChild(int action, double prob, double reward, boolean terminal, Worker worker) {
+            this.action = action;
+            this.prob = prob;
+            this.reward = reward;
+            this.terminal = terminal;
+            this.worker = worker;
+        }
+    }
+
+    // Board state the search needs, small enough to copy at every ply
+    private final class State {
+        int pacX, pacY, pacDX, pacDY;
+        final int[] gx = new int[nGhosts];
+        final int[] gy = new int[nGhosts];
+        final int[] gdx = new int[nGhosts];
+        final int[] gdy = new int[nGhosts];
+        final boolean[] gf = new boolean[nGhosts];
+        int frightenedTimer;
+        int phaseTicks;
+        int dotsLeft;
+        long dotsHash;
+        boolean dead;
+        int eatenCell = -1;  // Cell cleared on the move into this state, for undo
+        byte eatenValue;
+
+        void copyFrom(State o) {
+            pacX = o.pacX; pacY = o.pacY; pacDX = o.pacDX; pacDY = o.pacDY;
+            System.arraycopy(o.gx, 0, gx, 0, nGhosts);
+            System.arraycopy(o.gy, 0, gy, 0, nGhosts);
+            System.arraycopy(o.gdx, 0, gdx, 0, nGhosts);
+            System.arraycopy(o.gdy, 0, gdy, 0, nGhosts);
+            System.arraycopy(o.gf, 0, gf, 0, nGhosts);
+            frightenedTimer = o.frightenedTimer;
+            phaseTicks = o.phaseTicks;
+            dotsLeft = o.dotsLeft;
+            dotsHash = o.dotsHash;
+            dead = false;
+            eatenCell = -1;
+        }
+    }
+
+    // Per-thread search context: its own copy of the maze and preallocated per-ply buffers
+    private final class Worker {
+        byte[] cells;
+        int[] queue, dist, seen;
+        int stamp;
+
+        final State root = new State();
+        final State[] mid = new State[MAX_DEPTH + 1];   // After Pac-Man moved and collisions resolved
+        final State[] next = new State[MAX_DEPTH + 1];  // After ghosts moved and the tile was eaten
+        final int[][] actions = new int[MAX_DEPTH + 1][4];
+        final int[][] choice = new int[MAX_DEPTH + 1][nGhosts];
+        final int[][] optCount = new int[MAX_DEPTH + 1][nGhosts];
+        final int[][][] optDX = new int[MAX_DEPTH + 1][nGhosts][4];
+        final int[][][] optDY = new int[MAX_DEPTH + 1][nGhosts][4];
+        final double[][][] optProb = new double[MAX_DEPTH + 1][nGhosts][4];
+
+        // Scratch space for the non-recursive helpers
+        final int[] seenX = new int[4], seenY = new int[4], seenDX = new int[4], seenDY = new int[4];
+        final int[] px = new int[4], py = new int[4];
+        final int[] targetX = new int[nGhosts], targetY = new int[nGhosts];
+        final double[] odds = new double[4];
+
+        int nodes;
+        boolean aborted;
+        double result;
+
+        Worker() {
+            for (int i = 0; i <= MAX_DEPTH; i++) {
+                mid[i] = new State();
+                next[i] = new State();
+            }
+        }
+
+        private void ensureCapacity() {
+            int n = rows * cols;
+            if (cells == null || cells.length != n) {
+                cells = new byte[n];
+                queue = new int[n];
+                dist = new int[n];
+                seen = new int[n];
+                stamp = 0;
+            }
+            nodes = 0;
+            aborted = false;
+        }
+
+        void load(short[][] screenData, int pacmanX, int pacmanY, int pacmanDX, int pacmanDY,
+                  int[] ghostX, int[] ghostY, int[] ghostDX, int[] ghostDY,
+                  boolean[] ghostFrightened, int frightenedTimer, int phaseTicks) {
+            ensureCapacity();
+            root.dotsLeft = 0;
+            root.dotsHash = 0;
+            for (int r = 0; r < rows; r++) {
+                for (int c = 0; c < cols; c++) {
+                    int i = r * cols + c;
+                    cells[i] = (byte) screenData[r][c];
+                    if (cells[i] == DOT || cells[i] == PELLET) {
+                        root.dotsLeft++;
+                        root.dotsHash ^= dotKey[i];
+                    }
+                }
+            }
+            root.pacX = pacmanX; root.pacY = pacmanY;
+            root.pacDX = pacmanDX; root.pacDY = pacmanDY;
+            System.arraycopy(ghostX, 0, root.gx, 0, nGhosts);
+            System.arraycopy(ghostY, 0, root.gy, 0, nGhosts);
+            System.arraycopy(ghostDX, 0, root.gdx, 0, nGhosts);
+            System.arraycopy(ghostDY, 0, root.gdy, 0, nGhosts);
+            System.arraycopy(ghostFrightened, 0, root.gf, 0, nGhosts);
+            root.frightenedTimer = frightenedTimer;
+            root.phaseTicks = phaseTicks;
+            root.dead = false;
+            root.eatenCell = -1;
+        }
+
+        void loadFrom(Worker parent, State state) {
+            ensureCapacity();
+            System.arraycopy(parent.cells, 0, cells, 0, cells.length);
+            root.copyFrom(state);
+        }
+
+        // Max node: best expected value over Pac-Man's distinct moves
+        double search(State s, int ply, int remaining) {
+            if (remaining == 0) {
+                return evaluate(s);
+            }
+            if ((++nodes & DEADLINE_CHECK_MASK) == 0 && System.nanoTime() > deadline) {
+                aborted = true;
+            }
+            if (aborted) {
+                return 0;
+            }
+
+            long hash = hash(s);
+            long cached = probe(hash, remaining);
+            if (cached != 0L) {
+                return Float.intBitsToFloat((int) (cached >>> 32));
+            }
+
+            double best = Double.NEGATIVE_INFINITY;
+            int nActions = distinctActions(s, ply);
+            for (int i = 0; i < nActions; i++) {
+                State m = mid[ply];
+                m.copyFrom(s);
+                movePacman(m, actions[ply][i]);
+                double v = expectOverGhosts(m, ply, remaining);
+                if (aborted) {
+                    return 0;
+                }
+                if (v > best) {
+                    best = v;
+                }
+            }
+            store(hash, remaining, best);
+            return best;
+        }
+
+        // Chance node: ghosts move, possibly with random tie-breaks, then the tile is eaten
+        private double expectOverGhosts(State m, int ply, int remaining) {
+            double reward = resolveCollisions(m);
+            if (m.dead) {
+                return DEATH_PENALTY;
+            }
+            collectGhostOptions(m, ply);
+            Arrays.fill(choice[ply], 0);
+            State n = next[ply];
+            double total = 0;
+            do {
+                double p = applyGhostChoice(m, n, ply);
+                double r = checkMaze(n);
+                double v = n.dotsLeft == 0 ? CLEAR_BONUS : search(n, ply + 1, remaining - 1);
+                undoEat(n);
+                if (aborted) {
+                    return 0;
+                }
+                total += p * (r + v);
+            } while (advanceChoice(ply));
+            return reward + total;
+        }
+
+        // Requests that lead to the same Pac-Man move are only searched once
+        int distinctActions(State s, int ply) {
+            int[] out = actions[ply];
+            int count = 0;
+            State m = mid[ply];
+            for (int a = 0; a < 4; a++) {
+                m.copyFrom(s);
+                movePacman(m, a);
+                boolean duplicate = false;
+                for (int k = 0; k < count; k++) {
+                    if (seenX[k] == m.pacX && seenY[k] == m.pacY && seenDX[k] == m.pacDX && seenDY[k] == m.pacDY) {
+                        duplicate = true;
+                        break;
+                    }
+                }
+                if (!duplicate) {
+                    seenX[count] = m.pacX; seenY[count] = m.pacY;
+                    seenDX[count] = m.pacDX; seenDY[count] = m.pacDY;
+                    out[count++] = a;
+                }
+            }
+            return count;
+        }
+
+        // Same rules as Board.movePacman
+        void movePacman(State s, int action) {
+            if (s.pacX == 0 && s.pacDX == -1) {
+                s.pacX = cols - 1;
+            } else if (s.pacX == cols - 1 && s.pacDX == 1) {
+                s.pacX = 0;
+            }
+            int reqX = DIR_X[action], reqY = DIR_Y[action];
+            if (canMove(s.pacX + reqX, s.pacY + reqY)) {
+                s.pacDX = reqX;
+                s.pacDY = reqY;
+            }
+            if (canMove(s.pacX + s.pacDX, s.pacY + s.pacDY)) {
+                s.pacX += s.pacDX;
+                s.pacY += s.pacDY;
+            }
+        }
+
+        // Frightened countdown, scatter/chase clock and collision checks from the top of Board.moveGhosts
+        double resolveCollisions(State s) {
+            if (s.frightenedTimer > 0) {
+                s.frightenedTimer--;
+                if (s.frightenedTimer == 0) {
+                    Arrays.fill(s.gf, false);
+                }
+            } else {
+                s.phaseTicks++;
+            }
+            double reward = 0;
+            for (int g = 0; g < nGhosts; g++) {
+                int distanceX = Math.abs(s.pacX - s.gx[g]);
+                int distanceY = Math.abs(s.pacY - s.gy[g]);
+                if (s.gf[g]) {
+                    if (distanceX == 0 && distanceY == 0) {
+                        reward += GHOST_REWARD;
+                        s.gx[g] = spawnX[g];
+                        s.gy[g] = spawnY[g];
+                        s.gf[g] = false;
+                    }
+                } else if (distanceX <= 1 && distanceY <= 1) {
+                    s.dead = true;
+                    return reward;
+                }
+            }
+            return reward;
+        }
+
+        // Lists every direction each ghost may take from s and how likely Board would pick it
+        void collectGhostOptions(State s, int ply) {
+            GhostTargeting.targets(targeting, nGhosts, s.gx, s.gy, s.pacX, s.pacY, s.pacDX, s.pacDY,
+                                   rows, cols, GhostTargeting.isScatter(s.phaseTicks), targetX, targetY);
+            int combos = 1;
+            for (int g = 0; g < nGhosts; g++) {
+                int[] ox = optDX[ply][g], oy = optDY[ply][g];
+                double[] op = optProb[ply][g];
+                int x = s.gx[g], y = s.gy[g], dx = s.gdx[g], dy = s.gdy[g];
+
+                int n = 0;
+                if (dx != 1 && canMove(x - 1, y)) { px[n] = -1; py[n] = 0; n++; }
+                if (dx != -1 && canMove(x + 1, y)) { px[n] = 1; py[n] = 0; n++; }
+                if (dy != 1 && canMove(x, y - 1)) { px[n] = 0; py[n] = -1; n++; }
+                if (dy != -1 && canMove(x, y + 1)) { px[n] = 0; py[n] = 1; n++; }
+
+                int count;
+                if (n == 0) {
+                    boolean reverse = canMove(x - dx, y - dy);
+                    ox[0] = reverse ? -dx : dx;
+                    oy[0] = reverse ? -dy : dy;
+                    op[0] = 1;
+                    count = 1;
+                } else if (n == 1 && (dx != 0 || dy != 0)) {
+                    ox[0] = px[0]; oy[0] = py[0]; op[0] = 1;
+                    count = 1;
+                } else if (s.gf[g]) {
+                    int best = 0, maxDist = -1;
+                    for (int k = 0; k < n; k++) {
+                        int d = Math.abs(x + px[k] - s.pacX) + Math.abs(y + py[k] - s.pacY);
+                        if (d > maxDist) {
+                            maxDist = d;
+                            best = k;
+                        }
+                    }
+                    ox[0] = px[best]; oy[0] = py[best]; op[0] = 1;
+                    count = 1;
+                } else {
+                    // Replays the chase loop's "equal distance and nextBoolean()" tie-break as odds:
+                    // each later tie halves the odds of every earlier one
+                    Arrays.fill(odds, 0);
+                    int minDist = Integer.MAX_VALUE;
+                    for (int k = 0; k < n; k++) {
+                        int d = Math.abs(x + px[k] - targetX[g]) + Math.abs(y + py[k] - targetY[g]);
+                        if (d < minDist) {
+                            minDist = d;
+                            Arrays.fill(odds, 0);
+                            odds[k] = 1;
+                        } else if (d == minDist) {
+                            for (int j = 0; j < k; j++) {
+                                odds[j] *= 0.5;
+                            }
+                            odds[k] = 0.5;
+                        }
+                    }
+                    count = 0;
+                    for (int k = 0; k < n; k++) {
+                        if (odds[k] > 0) {
+                            ox[count] = px[k]; oy[count] = py[k]; op[count] = odds[k];
+                            count++;
+                        }
+                    }
+                }
+                optCount[ply][g] = count;
+                combos *= count;
+            }
+
+            // Keep the tree bounded: collapse the last ghosts to their likeliest move
+            for (int g = nGhosts - 1; g >= 0 && combos > MAX_CHANCE_BRANCHES; g--) {
+                int count = optCount[ply][g];
+                if (count > 1) {
+                    double[] op = optProb[ply][g];
+                    int best = 0;
+                    for (int k = 1; k < count; k++) {
+                        if (op[k] > op[best]) {
+                            best = k;
+                        }
+                    }
+                    optDX[ply][g][0] = optDX[ply][g][best];
+                    optDY[ply][g][0] = optDY[ply][g][best];
+                    op[0] = 1;
+                    optCount[ply][g] = 1;
+                    combos /= count;
+                }
+            }
+        }
+
+        // Copies m into n, moves every ghost by the current choice and returns its probability
+        double applyGhostChoice(State m, State n, int ply) {
+            n.copyFrom(m);
+            double p = 1;
+            int[] ch = choice[ply];
+            for (int g = 0; g < nGhosts; g++) {
+                int k = ch[g];
+                p *= optProb[ply][g][k];
+                n.gdx[g] = optDX[ply][g][k];
+                n.gdy[g] = optDY[ply][g][k];
+                int newX = n.gx[g] + n.gdx[g];
+                int newY = n.gy[g] + n.gdy[g];
+                if (newX == -1 && n.gdx[g] == -1) newX = cols - 1;
+                if (newX == cols && n.gdx[g] == 1) newX = 0;
+                if (canMove(newX, newY)) {
+                    n.gx[g] = newX;
+                    n.gy[g] = newY;
+                }
+            }
+            return p;
+        }
+
+        boolean advanceChoice(int ply) {
+            int[] ch = choice[ply];
+            for (int g = 0; g < nGhosts; g++) {
+                if (++ch[g] < optCount[ply][g]) {
+                    return true;
+                }
+                ch[g] = 0;
+            }
+            return false;
+        }
+
+        // Same rules as Board.checkMaze; the eaten tile is remembered so undoEat can restore it
+        double checkMaze(State s) {
+            int i = s.pacY * cols + s.pacX;
+            byte cell = cells[i];
+            if (cell != DOT && cell != PELLET) {
+                return 0;
+            }
+            s.eatenCell = i;
+            s.eatenValue = cell;
+            cells[i] = EMPTY;
+            s.dotsLeft--;
+            s.dotsHash ^= dotKey[i];
+            if (cell == DOT) {
+                return DOT_REWARD;
+            }
+            s.frightenedTimer = frightenedDuration;
+            for (int g = 0; g < nGhosts; g++) {
+                s.gf[g] = true;
+                s.gdx[g] *= -1;
+                s.gdy[g] *= -1;
+            }
+            return PELLET_REWARD;
+        }
+
+        void undoEat(State s) {
+            if (s.eatenCell >= 0) {
+                cells[s.eatenCell] = s.eatenValue;
+                s.eatenCell = -1;
+            }
+        }
+
+        private boolean canMove(int x, int y) {
+            return x >= 0 && x < cols && y >= 0 && y < rows && cells[y * cols + x] != WALL;
+        }
+
+        private long hash(State s) {
+            long h = s.dotsHash
+                    ^ pacPosKey[s.pacY * cols + s.pacX]
+                    ^ pacDirKey[dirIndex(s.pacDX, s.pacDY)]
+                    ^ timerKey[Math.min(s.frightenedTimer, frightenedDuration)];
+            for (int g = 0; g < nGhosts; g++) {
+                h ^= ghostPosKey[g][s.gy[g] * cols + s.gx[g]] ^ ghostDirKey[g][dirIndex(s.gdx[g], s.gdy[g])];
+                if (s.gf[g]) {
+                    h ^= ghostFrightKey[g];
+                }
+            }
+            if (GhostTargeting.isScatter(s.phaseTicks)) {
+                h ^= scatterKey;
+            }
+            return h;
+        }
+
+        // Leaf heuristic: path distance to the nearest dot, minus danger from nearby ghosts.
+        // A breadth-first search from Pac-Man stops once both are known.
+        double evaluate(State s) {
+            if (++stamp == 0) {
+                Arrays.fill(seen, 0);
+                stamp = 1;
+            }
+            int start = s.pacY * cols + s.pacX;
+            int head = 0, tail = 0;
+            queue[tail++] = start;
+            seen[start] = stamp;
+            dist[start] = 0;
+            int dotDist = -1;
+            while (head < tail) {
+                int cell = queue[head++];
+                int d = dist[cell];
+                if (d > DANGER_RADIUS && dotDist >= 0) {
+                    break;
+                }
+                if (dotDist < 0 && (cells[cell] == DOT || cells[cell] == PELLET)) {
+                    dotDist = d;
+                }
+                int x = cell % cols, y = cell / cols;
+                for (int dir = 0; dir < 4; dir++) {
+                    int nx = x + DIR_X[dir], ny = y + DIR_Y[dir];
+                    if (nx < 0) nx = cols - 1;       // Tunnel
+                    if (nx >= cols) nx = 0;
+                    if (ny < 0 || ny >= rows) continue;
+                    int ni = ny * cols + nx;
+                    if (cells[ni] == WALL || seen[ni] == stamp) continue;
+                    seen[ni] = stamp;
+                    dist[ni] = d + 1;
+                    queue[tail++] = ni;
+                }
+            }
+
+            double value = dotDist > 0 ? -3.0 * dotDist : 0;
+            for (int g = 0; g < nGhosts; g++) {
+                int gi = s.gy[g] * cols + s.gx[g];
+                if (seen[gi] != stamp || dist[gi] > DANGER_RADIUS) {
+                    continue;
+                }
+                int closeness = DANGER_RADIUS + 1 - dist[gi];
+                if (!s.gf[g]) {
+                    value -= closeness * 150.0;
+                } else if (s.frightenedTimer > dist[gi]) {
+                    value += closeness * 30.0;
+                }
+            }
+            return value;
+        }
+    }
+}
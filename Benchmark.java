@@ -0,0 +1,455 @@
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Headless soak benchmark: java PacManGame --bench [TICKS] [options]
+ *
+ * Plays a fixed set of seeded games on fixed mazes, TICKS ticks each after a warm-up, with no
+ * timers and no window. Pac-Man is steered by a seeded random walk rather than the autopilot,
+ * so every run does the same work and the numbers only move when the code does.
+ *
+ * Every tick is timed on its own, then one offscreen frame is painted and timed on its own, so
+ * the latency percentiles are of single ticks and frames (including the cost of reading the
+ * clock, which is the same in every run). The measured ticks are split into REPEATS repeats
+ * that each play the same game from the start. Every figure is reported as the median, min
+ * and max over the repeats. Prints a JSON report with, per scenario:
+ *
+ *   ticksPerSec, framesPerSec       - throughput of tick() (with steering) and of painting a frame
+ *   tickMicros, frameMicros         - p50 / p99 / p999 of single ticks and frames; a percentile
+ *                                     is left out when a repeat has too few samples to place it
+ *   allocBytesPerSec/PerTick        - heap allocated by the game thread, ticks and frames together
+ *   gcCount, gcMillis               - collections during a repeat
+ *
+ * Options:
+ *   --bench-size WxH       offscreen frame size (default 1280x720)
+ *   --bench-out FILE       also write the report to FILE, e.g. to keep as a baseline
+ *   --baseline FILE        compare against an earlier report
+ *
+ * A metric has regressed only if even its best repeat is worse than the baseline's worst
+ * repeat by more than the metric's tolerance, so run-to-run noise that both reports show does
+ * not fail the gate. A gated metric that the baseline does not have also fails it. Exits with
+ * status 1 on any failure, so it can gate a build.
+ */
+class Benchmark {
+
+    private static final int DEFAULT_TICKS = 50_000;
+    private static final int REPEATS = 5;               // Figures are the median over this many repeats
+    private static final int TAIL_SAMPLES = 10;         // Samples a repeat needs above a percentile to report it
+    private static final double TURN_CHANCE = 1.0 / 6; // Chance per tick the random walk picks a new direction
+
+    private static final double[] PERCENTILES = {0.5, 0.99, 0.999};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p99", "p999"};
+
+    // Tolerances of the baseline check, in percent of the baseline's worst repeat. Timings of
+    // the same build differ by up to about 20% from one JVM to the next (JIT decisions, CPU
+    // frequency), more in the tails; allocation is nearly deterministic.
+    private static final double THROUGHPUT_TOLERANCE = 20;
+    private static final double MEDIAN_LATENCY_TOLERANCE = 20;
+    private static final double TAIL_LATENCY_TOLERANCE = 50;
+    private static final double ALLOCATION_TOLERANCE = 5;
+    private static final double GC_TOLERANCE = 50;
+    // GC is counted for the whole JVM, and a repeat may start just before or just after a
+    // collection, so a repeat can always see one more collection than its neighbours
+    private static final double GC_COUNT_NOISE = 1;
+    private static final double GC_MILLIS_NOISE = 10;
+
+    private static final int[] DX = {-1, 1, 0, 0};
+    private static final int[] DY = {0, 0, -1, 1};
+
+    // A figure the baseline check looks at. allocBytesPerSec is only reported: it rises when
+    // the code gets faster, so it cannot tell a regression.
+    private static final class Metric {
+        final String name;
+        final boolean higherIsBetter;
+        final double tolerance; // Percent
+        final double noise;     // Absolute, in the metric's unit
+
+        Metric(String name, boolean higherIsBetter, double tolerance, double noise) {
+            this.name = name;
+            this.higherIsBetter = higherIsBetter;
+            this.tolerance = tolerance;
+            this.noise = noise;
+        }
+    }
+
+    private static final Metric[] GATED = {
+        new Metric("ticksPerSec", true, THROUGHPUT_TOLERANCE, 0),
+        new Metric("framesPerSec", true, THROUGHPUT_TOLERANCE, 0),
+        new Metric("tickMicros.p50", false, MEDIAN_LATENCY_TOLERANCE, 0),
+        new Metric("tickMicros.p99", false, TAIL_LATENCY_TOLERANCE, 0),
+        new Metric("tickMicros.p999", false, TAIL_LATENCY_TOLERANCE, 0),
+        new Metric("frameMicros.p50", false, MEDIAN_LATENCY_TOLERANCE, 0),
+        new Metric("frameMicros.p99", false, TAIL_LATENCY_TOLERANCE, 0),
+        new Metric("frameMicros.p999", false, TAIL_LATENCY_TOLERANCE, 0),
+        new Metric("allocBytesPerTick", false, ALLOCATION_TOLERANCE, 0),
+        new Metric("gcCount", false, GC_TOLERANCE, GC_COUNT_NOISE),
+        new Metric("gcMillis", false, GC_TOLERANCE, GC_MILLIS_NOISE),
+    };
+
+    // One repeat of a scenario's measured part
+    private static final class Run {
+        double ticksPerSec, framesPerSec, allocBytesPerSec, allocBytesPerTick;
+        double[] tickMicros, frameMicros; // As PERCENTILES; NaN where there are too few samples
+        double gcCount, gcMillis;
+    }
+
+    private static final class Scenario {
+        final String name;
+        final String[] maze;
+        final long seed;
+
+        Scenario(String name, String[] maze, long seed) {
+            this.name = name;
+            this.maze = maze;
+            this.seed = seed;
+        }
+    }
+
+    static int run(String[] args) throws IOException {
+        List<String> argList = Arrays.asList(args);
+        int benchArg = argList.indexOf("--bench");
+        int ticks = benchArg + 1 < args.length && !args[benchArg + 1].startsWith("--")
+                ? Integer.parseInt(args[benchArg + 1]) : DEFAULT_TICKS;
+        String size = option(args, "--bench-size", "1280x720");
+        int width = Integer.parseInt(size.split("x")[0]);
+        int height = Integer.parseInt(size.split("x")[1]);
+
+        Scenario[] scenarios = {
+            new Scenario("classic", null, 1),
+            new Scenario("generated-41x39", MazeGenerator.generate(41, 39, 1234), 2),
+            new Scenario("generated-101x101", MazeGenerator.generate(101, 101, 5678), 3),
+        };
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"ticks\": ").append(ticks).append(",\n");
+        json.append("  \"frameSize\": \"").append(width).append('x').append(height).append("\",\n");
+        json.append("  \"java\": \"").append(System.getProperty("java.version")).append("\",\n");
+        json.append("  \"scenarios\": {\n");
+        // Warm every scenario up before measuring any, so later ones do not pay for JIT work
+        for (Scenario scenario : scenarios) {
+            System.err.println("Benchmark: warming up " + scenario.name + "...");
+            warmUp(scenario, ticks, width, height);
+        }
+        for (int i = 0; i < scenarios.length; i++) {
+            System.err.println("Benchmark: " + scenarios[i].name + "...");
+            json.append("    \"").append(scenarios[i].name).append("\": ");
+            json.append(measure(scenarios[i], ticks, width, height));
+            json.append(i + 1 < scenarios.length ? ",\n" : "\n");
+        }
+        json.append("  }\n}\n");
+
+        String report = json.toString();
+        System.out.print(report);
+        String out = option(args, "--bench-out", null);
+        if (out != null) {
+            Files.write(Paths.get(out), report.getBytes(StandardCharsets.UTF_8));
+        }
+
+        String baseline = option(args, "--baseline", null);
+        if (baseline == null) {
+            return 0;
+        }
+        Map<String, Double> base = parse(new String(Files.readAllBytes(Paths.get(baseline)), StandardCharsets.UTF_8));
+        Map<String, Double> current = parse(report);
+        int failures = compare(base, current, scenarios);
+        System.err.println(failures == 0
+                ? "Benchmark: no regressions against " + baseline
+                : "Benchmark: " + failures + " failure(s) against " + baseline);
+        return failures == 0 ? 0 : 1;
+    }
+
+    private static String measure(Scenario scenario, int ticks, int width, int height) {
+        BufferedImage frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int perRepeat = Math.max(ticks / REPEATS, 1);
+        com.sun.management.ThreadMXBean threads = threadBean();
+        long[] tickNanos = new long[perRepeat];
+        long[] frameNanos = new long[perRepeat];
+        Run[] runs = new Run[REPEATS];
+        for (int r = 0; r < REPEATS; r++) {
+            runs[r] = measureRun(newBoard(scenario, width, height), frame, new Random(scenario.seed),
+                                 tickNanos, frameNanos, threads);
+        }
+
+        StringBuilder sb = new StringBuilder("{\n");
+        field(sb, "ticksPerSec", runs, run -> run.ticksPerSec, "%.1f");
+        field(sb, "framesPerSec", runs, run -> run.framesPerSec, "%.1f");
+        percentiles(sb, "tickMicros", runs, run -> run.tickMicros);
+        percentiles(sb, "frameMicros", runs, run -> run.frameMicros);
+        field(sb, "allocBytesPerSec", runs, run -> run.allocBytesPerSec, "%.1f");
+        field(sb, "allocBytesPerTick", runs, run -> run.allocBytesPerTick, "%.1f");
+        field(sb, "gcCount", runs, run -> run.gcCount, "%.0f");
+        field(sb, "gcMillis", runs, run -> run.gcMillis, "%.0f");
+        sb.setLength(sb.length() - 2); // Last ",\n"
+        sb.append("\n    }");
+        return sb.toString();
+    }
+
+    private static void warmUp(Scenario scenario, int ticks, int width, int height) {
+        int n = Math.max(ticks / 2, 1000);
+        play(newBoard(scenario, width, height), new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB),
+             new Random(scenario.seed), new long[n], new long[n]);
+    }
+
+    private static Board newBoard(Scenario scenario, int width, int height) {
+        String[] maze = scenario.maze != null ? scenario.maze : Board.defaultLevel();
+        Board board = new Board(LevelPack.single(maze), false);
+        board.setSize(width, height);
+        board.setSeed(scenario.seed);
+        board.newGame();
+        return board;
+    }
+
+    // Sample arrays are passed in so the measured part allocates only what the game does
+    private static Run measureRun(Board board, BufferedImage frame, Random walk, long[] tickNanos,
+                                  long[] frameNanos, com.sun.management.ThreadMXBean threads) {
+        long threadId = Thread.currentThread().getId();
+        long gcCount0 = 0, gcMillis0 = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount0 += Math.max(gc.getCollectionCount(), 0);
+            gcMillis0 += Math.max(gc.getCollectionTime(), 0);
+        }
+        long alloc0 = threads != null ? threads.getThreadAllocatedBytes(threadId) : 0;
+        long wall0 = System.nanoTime();
+
+        play(board, frame, walk, tickNanos, frameNanos);
+
+        long wall = System.nanoTime() - wall0;
+        long allocated = threads != null ? threads.getThreadAllocatedBytes(threadId) - alloc0 : -1;
+        Run run = new Run();
+        run.gcCount = -gcCount0;
+        run.gcMillis = -gcMillis0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            run.gcCount += Math.max(gc.getCollectionCount(), 0);
+            run.gcMillis += Math.max(gc.getCollectionTime(), 0);
+        }
+        run.ticksPerSec = rate(tickNanos);
+        run.framesPerSec = rate(frameNanos);
+        run.tickMicros = percentiles(tickNanos);
+        run.frameMicros = percentiles(frameNanos);
+        run.allocBytesPerSec = allocated < 0 ? -1 : allocated * 1e9 / wall;
+        run.allocBytesPerTick = allocated < 0 ? -1 : (double) allocated / tickNanos.length;
+        return run;
+    }
+
+    // Each tick is timed on its own, then one frame is painted and timed on its own
+    private static void play(Board board, BufferedImage frame, Random walk, long[] tickNanos, long[] frameNanos) {
+        for (int i = 0; i < tickNanos.length; i++) {
+            long t0 = System.nanoTime();
+            steer(board, walk);
+            board.tick();
+            if (!board.isInGame()) {
+                board.newGame();
+            } else if (board.isLevelCleared()) {
+                board.startNextLevel();
+            }
+            long t1 = System.nanoTime();
+            Graphics2D g = frame.createGraphics();
+            board.paintComponent(g);
+            g.dispose();
+            long t2 = System.nanoTime();
+            tickNanos[i] = t1 - t0;
+            frameNanos[i] = t2 - t1;
+        }
+    }
+
+    // Random walk: keep going until blocked, turning now and then. Also drives MosaicView's games.
+    static void steer(Board board, Random walk) {
+        if (walk.nextDouble() >= TURN_CHANCE) {
+            return;
+        }
+        int start = walk.nextInt(4);
+        for (int k = 0; k < 4; k++) {
+            int d = (start + k) & 3;
+            if (board.canMoveTo(DX[d], DY[d])) {
+                board.setRequestedDirection(DX[d], DY[d]);
+                return;
+            }
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+            if (threads.isThreadAllocatedMemorySupported()) {
+                threads.setThreadAllocatedMemoryEnabled(true);
+                return threads;
+            }
+        }
+        return null; // Allocation figures are reported as -1
+    }
+
+    // PERCENTILES in microseconds, NaN for those with fewer than TAIL_SAMPLES samples above them
+    private static double[] percentiles(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        double[] out = new double[PERCENTILES.length];
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            double p = PERCENTILES[i];
+            out[i] = sorted.length * (1 - p) < TAIL_SAMPLES ? Double.NaN
+                    : sorted[(int) Math.ceil(p * sorted.length) - 1] / 1e3;
+        }
+        return out;
+    }
+
+    // Leaves out the slowest 1% of samples, which p99 and p999 already cover, so that a
+    // single descheduling does not move the throughput
+    private static double rate(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        int kept = Math.max(sorted.length - sorted.length / 100, 1);
+        long total = 0;
+        for (int i = 0; i < kept; i++) {
+            total += sorted[i];
+        }
+        return kept * 1e9 / Math.max(total, 1);
+    }
+
+    private static void percentiles(StringBuilder sb, String name, Run[] runs, Function<Run, double[]> values) {
+        sb.append("      \"").append(name).append("\": {");
+        String sep = "";
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            int p = i;
+            if (Double.isNaN(values.apply(runs[0])[p])) {
+                continue; // Same sample count in every repeat
+            }
+            sb.append(sep).append('"').append(PERCENTILE_NAMES[p]).append("\": ")
+              .append(stats(runs, run -> values.apply(run)[p], "%.2f"));
+            sep = ", ";
+        }
+        sb.append("},\n");
+    }
+
+    private static void field(StringBuilder sb, String name, Run[] runs, ToDoubleFunction<Run> value, String format) {
+        sb.append("      \"").append(name).append("\": ").append(stats(runs, value, format)).append(",\n");
+    }
+
+    // Median, min and max over the repeats
+    private static String stats(Run[] runs, ToDoubleFunction<Run> value, String format) {
+        double[] values = new double[runs.length];
+        for (int r = 0; r < runs.length; r++) {
+            values[r] = value.applyAsDouble(runs[r]);
+        }
+        Arrays.sort(values);
+        return String.format(Locale.ROOT, "{\"median\": " + format + ", \"min\": " + format + ", \"max\": " + format + "}",
+                             values[values.length / 2], values[0], values[values.length - 1]);
+    }
+
+    private static String option(String[] args, String name, String fallback) {
+        int i = Arrays.asList(args).indexOf(name);
+        return i >= 0 && i + 1 < args.length ? args[i + 1] : fallback;
+    }
+
+    private static int compare(Map<String, Double> base, Map<String, Double> current, Scenario[] scenarios) {
+        int failures = 0;
+        for (Scenario s : scenarios) {
+            for (Metric m : GATED) {
+                String key = "scenarios." + s.name + "." + m.name;
+                Double nowBest = current.get(key + (m.higherIsBetter ? ".max" : ".min"));
+                if (nowBest == null) {
+                    continue; // Too few samples in this run to measure it
+                }
+                Double wasWorst = base.get(key + (m.higherIsBetter ? ".min" : ".max"));
+                if (wasWorst == null) {
+                    failures++;
+                    System.err.println("MISSING " + key + ": not in the baseline, which may be from another tick count");
+                    continue;
+                }
+                if (wasWorst < 0 || nowBest < 0) {
+                    continue; // Not measurable on this JVM
+                }
+                boolean worse = m.higherIsBetter
+                        ? nowBest < wasWorst * (1 - m.tolerance / 100) - m.noise
+                        : nowBest > wasWorst * (1 + m.tolerance / 100) + m.noise;
+                if (worse) {
+                    failures++;
+                    double was = base.getOrDefault(key + ".median", wasWorst);
+                    double now = current.getOrDefault(key + ".median", nowBest);
+                    System.err.printf(Locale.ROOT, "REGRESSION %s: median %.2f -> %.2f (%+.1f%%), every repeat "
+                                      + "worse than the baseline's worst by more than %.0f%%%n",
+                                      key, was, now, was == 0 ? 0 : (now - was) / was * 100, m.tolerance);
+                }
+            }
+        }
+        return failures;
+    }
+
+    // Reads the numbers out of a report as dotted paths, e.g. "scenarios.classic.tickMicros.p99".
+    // Only handles what this class writes: objects, strings and numbers.
+    static Map<String, Double> parse(String json) {
+        Map<String, Double> out = new LinkedHashMap<>();
+        int[] pos = {0};
+        parseValue(json, pos, "", out);
+        return out;
+    }
+
+    private static void parseValue(String s, int[] pos, String path, Map<String, Double> out) {
+        skipSpace(s, pos);
+        char c = s.charAt(pos[0]);
+        if (c == '{') {
+            pos[0]++;
+            while (true) {
+                skipSpace(s, pos);
+                if (s.charAt(pos[0]) == '}') {
+                    pos[0]++;
+                    return;
+                }
+                String key = parseString(s, pos);
+                skipSpace(s, pos);
+                expect(s, pos, ':');
+                parseValue(s, pos, path.isEmpty() ? key : path + "." + key, out);
+                skipSpace(s, pos);
+                if (s.charAt(pos[0]) == ',') {
+                    pos[0]++;
+                }
+            }
+        } else if (c == '"') {
+            parseString(s, pos);
+        } else {
+            int start = pos[0];
+            while (pos[0] < s.length() && "+-.0123456789eE".indexOf(s.charAt(pos[0])) >= 0) {
+                pos[0]++;
+            }
+            if (start == pos[0]) {
+                throw new IllegalArgumentException("Unexpected '" + c + "' at offset " + start);
+            }
+            out.put(path, Double.parseDouble(s.substring(start, pos[0])));
+        }
+    }
+
+    private static String parseString(String s, int[] pos) {
+        expect(s, pos, '"');
+        int end = s.indexOf('"', pos[0]);
+        String value = s.substring(pos[0], end);
+        pos[0] = end + 1;
+        return value;
+    }
+
+    private static void expect(String s, int[] pos, char c) {
+        if (s.charAt(pos[0]) != c) {
+            throw new IllegalArgumentException("Expected '" + c + "' at offset " + pos[0]);
+        }
+        pos[0]++;
+    }
+
+    private static void skipSpace(String s, int[] pos) {
+        while (pos[0] < s.length() && Character.isWhitespace(s.charAt(pos[0]))) {
+            pos[0]++;
+        }
+    }
+}
@@ -0,0 +1,1629 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+
+class Board extends JPanel implements ActionListener {
+
+    // Tile size and maze dimensions
+    static final int TILE_SIZE = 20;  // Size of each tile in logical pixels, before scaling
+    private int N_ROWS;               // Number of rows in the maze (set per level)
+    private int N_COLS;               // Number of columns in the maze (set per level)
+
+    // Screen dimensions based on tile size and maze dimensions
+    private int SCREEN_WIDTH;
+    private int SCREEN_HEIGHT;
+
+    // Game state variables
+    private boolean inGame = false;
+    private boolean dying = false;
+    private boolean win = false;
+
+    private int lives;
+    private int score;
+    private int dotsLeft;
+    private long seed;                  // Seed of random for the current game, saved with the score
+    private Long fixedSeed;             // Seed for every new game instead of the clock; null in normal play
+    private long runTicks;              // Ticks played since the game started
+    private HighScoreStore highScores;  // null when scores are not saved
+    private EventLog eventLog;          // null when events are not recorded
+    private AudioEngine audio;          // null when sound is off
+    private GameMetrics.Session metrics; // null when not reported over JMX
+    private ReplayRecorder recorder;    // null when games are not recorded
+    private boolean framePending;       // A repaint was asked for and has not happened yet
+
+    // Pac-Man properties
+    private int pacmanX, pacmanY;       // Pac-Man's current tile coordinates
+    private int pacmanDX, pacmanDY;     // Pac-Man's current direction of movement
+    private int reqDX, reqDY;           // Pac-Man's requested direction of movement
+
+    // Ghost properties
+    private final int N_GHOSTS = 4;
+    private int[] ghostX, ghostY;       // Ghosts' current tile coordinates
+    private int[] ghostDX, ghostDY;     // Ghosts' current direction of movement
+    private boolean[] ghostFrightened;  // Is the ghost currently frightened?
+    private int frightenedTimer;        // How long ghosts remain frightened
+    private int frightenedDuration = LevelPack.DEFAULT_FRIGHTENED; // Ticks for frightened mode (set per level)
+    private int[] ghostTargeting;       // Each ghost's personality, a GhostTargeting code
+    private int[] targetX, targetY;     // Tile each ghost is heading for this tick
+    private int phaseTicks;             // Ticks into the scatter/chase schedule, which pauses while frightened
+
+    // Maze data:
+    // 0 = empty path (will be filled with dot)
+    // 1 = wall
+    // 2 = power pellet
+    // P = Pac-Man start
+    // G = Ghost start
+    // E = Empty space (no dot, e.g., ghost house exit)
+    // Points at the current level of the level pack; the default pack is just DEFAULT_LEVEL
+    private String[] levelDataString;
+    private static final String[] DEFAULT_LEVEL = {
+        "1111111111111111111",
+        "1200000001000000021",
+        "1011011101011101101",
+        "1000000000000000001",
+        "1011010111110101101",
+        "1000010001000100001",
+        "1111011101011101111",
+        "111101000E000101111",
+        "11110101G1G10101111",
+        "00000001G1G10000000", // Tunnel
+        "1111010111110101111",
+        "1111010000000101111",
+        "1111010111110101111",
+        "100000000P000000001",
+        "1011011101011101101",
+        "1200010001000100021",
+        "1101010111110101011",
+        "1000000000000000001",
+        "1011111111111111101",
+        "1000000000000000001",
+        "1111111111111111111"
+    };
+    private short[][] screenData; // Parsed maze data (0=dot, 1=wall, 2=power pellet, 16=empty)
+
+    // Level pack. The level being played owns screenData; the next one is compiled into the
+    // spare buffers on a background thread during play and swapped in when the level ends.
+    private final LevelPack levelPack;
+    private LevelPack.Level level = new LevelPack.Level();
+    private LevelPack.Level preloaded = new LevelPack.Level();
+    private Future<?> preloadTask;
+    private static final ExecutorService LEVEL_LOADER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "level-loader");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Animation variables
+    private int animationStep = 0;
+    private final int ANIMATION_SPEED = 2; 
+    private int mouthAngle = 45;
+    private boolean mouthClosing = false;
+    private final int MOUTH_ANGLE_CHANGE = 50; 
+    
+    // Colors (more authentic to original Pac-Man)
+    private static final Color WALL_COLOR = new Color(0, 0, 255); // Classic blue walls
+    private static final Color DOT_COLOR = new Color(255, 255, 255); // White dots
+    private static final Color POWER_PELLET_COLOR = new Color(255, 255, 255); // White power pellets
+    private static final Color PACMAN_COLOR = new Color(255, 255, 0); // Classic yellow
+    private static final Color[] GHOST_COLORS = {
+        new Color(255, 0, 0),    // Red (Blinky)
+        new Color(255, 184, 255), // Pink (Pinky)
+        new Color(0, 255, 255),  // Cyan (Inky)
+        new Color(255, 184, 82)  // Orange (Clyde)
+    };
+    private static final Color FRIGHTENED_GHOST_COLOR = new Color(33, 33, 255); // Blue when frightened
+    private static final Color GHOST_EYES_COLOR = Color.WHITE;
+    private static final Color GHOST_PUPIL_COLOR = new Color(0, 0, 255); // Blue pupils
+
+    private final boolean realTime;     // Driven by the Swing timers rather than by the caller
+    private Timer timer;
+    private Timer levelTimer;           // Starts the next level 2 seconds after a level is cleared
+    private GameRandom random;          // Its state is part of a saved State
+    private Dimension d; 
+
+    
+    private final int PADDING_X = 90;  
+    private final int PADDING_Y = 110; 
+    private final int PADDING_BOTTOM = 150; 
+    private final int SCORE_HEIGHT = 60; 
+
+    // Scaled rendering. Everything is laid out in logical pixels (TILE_SIZE tiles plus the
+    // padding above) and scaled to fit the window. The maze, sprites and score bar are cached
+    // as images at the current tile size in device pixels and only rebuilt when it changes,
+    // so a full-screen 4K frame costs a few image copies rather than redrawing every shape.
+    private boolean integerScaling;          // Only scale up by whole multiples of TILE_SIZE
+    private SpriteCache sprites;
+    private int originX, originY;            // Device position of the maze's top-left corner
+    private final AffineTransform deviceTransform = new AffineTransform();
+    private BufferedImage mazeLayer;         // Walls, dots and pellets
+    private boolean mazeLayerValid;
+    private final int[] eatenTiles = new int[64]; // Tiles to clear from mazeLayer, as row * N_COLS + col
+    private int eatenCount;
+    private BufferedImage hudLayer;          // Score and lives
+    private boolean hudLayerValid;
+    private int hudScore = -1, hudLives = -1;
+
+    // Add game progression variables
+    private int currentLevel = 1;
+    private int currentGhostSpeed;    // Current ghost speed, from the level pack
+    private boolean autoStart = true;  // Auto start flag
+
+    // Undo journal of eaten dots and pellets for restoreState(), as row * N_COLS + col << 2 | old value
+    private final int[] journal;        // Sized for the pack's fullest level, so levels start without allocating
+    private int journalSize;
+    private long journalHash;           // Running hash of the journal, for checksum()
+    private boolean replaying;          // Re-running ticks after a rollback: no sounds or events
+
+    private IntConsumer keyHandler;     // Gets key presses instead of the game, in versus and replay; else null
+
+    // Versus mode: one ghost is steered by a player like Pac-Man is
+    private int controlledGhost = -1;
+    private int ghostReqDX, ghostReqDY;
+    private final int[] possibleDX = new int[4]; // Scratch for moveGhosts
+    private final int[] possibleDY = new int[4];
+
+    // Autopilot: searches for Pac-Man's next move each tick instead of reading the keyboard
+    private Autopilot autopilot;        // null while the player is in control
+    private final int AUTOPILOT_BUDGET_PERCENT = 40; // Share of the tick period the search may use
+
+    public Board() {
+        this(DEFAULT_LEVEL);
+    }
+
+    public Board(String[] levelData) {
+        this(LevelPack.single(levelData));
+    }
+
+    public Board(LevelPack levelPack) {
+        this(levelPack, true);
+    }
+
+    // Without realTime no timers run: the caller drives the game with tick() and startNextLevel()
+    Board(LevelPack levelPack, boolean realTime) {
+        this.levelPack = levelPack;
+        this.realTime = realTime;
+        journal = new int[levelPack.maxDots()];
+        initBoard();
+        d = getSize();  // Initialize dimension
+    }
+
+    private void initBoard() {
+        addKeyListener(new TAdapter());
+        setFocusable(true);
+        setBackground(Color.BLACK);
+
+        random = new GameRandom();
+        ghostX = new int[N_GHOSTS];
+        ghostY = new int[N_GHOSTS];
+        ghostDX = new int[N_GHOSTS];
+        ghostDY = new int[N_GHOSTS];
+        ghostFrightened = new boolean[N_GHOSTS];
+        ghostTargeting = GhostTargeting.defaults(N_GHOSTS);
+        targetX = new int[N_GHOSTS];
+        targetY = new int[N_GHOSTS];
+        timer = new Timer(0, this); // Delay is set per level
+        levelTimer = new Timer(2000, e -> initGame());
+        levelTimer.setRepeats(false);
+
+        initGame();
+       
+        setPreferredSize(new Dimension(SCREEN_WIDTH + PADDING_X * 2, 
+                                     SCREEN_HEIGHT + PADDING_Y + PADDING_BOTTOM + SCORE_HEIGHT));
+        d = getSize();
+    }
+
+    private void initGame() {
+        if (currentLevel == 1) {
+            lives = 3;
+            score = 0;
+            runTicks = 0;
+            seed = fixedSeed != null ? fixedSeed : System.nanoTime();
+            random.setSeed(seed);
+            if (metrics != null) {
+                metrics.gameStarted();
+            }
+        }
+        if (recorder != null) {
+            recorder.levelStarting(currentLevel == 1, levelPack, ghostTargeting, seed);
+        }
+        
+        frightenedTimer = 0;
+        dying = false;
+        win = false;
+
+        loadLevel(currentLevel);
+        if (eventLog != null) {
+            eventLog.levelStarted(levelDataString, level.mazeRecord, runTicks);
+        }
+        initPacManAndGhosts();
+        if (autopilot != null) {
+            autopilot.setMaze(levelDataString, frightenedDuration);
+        }
+
+        if (realTime) {
+            timer.setDelay(currentGhostSpeed);
+            timer.setInitialDelay(currentGhostSpeed);
+            timer.restart();
+        }
+        
+        inGame = true; // Auto start
+
+        preload(currentLevel + 1);
+    }
+
+    // Swaps in the preloaded level if it is the one wanted, otherwise compiles it right here
+    private void loadLevel(int number) {
+        awaitPreload();
+        if (preloaded.number == number) {
+            LevelPack.Level t = level;
+            level = preloaded;
+            preloaded = t;
+        } else {
+            levelPack.compileInto(number, level, N_GHOSTS);
+        }
+
+        levelDataString = level.levelData;
+        screenData = level.screenData;
+        N_ROWS = level.rows;
+        N_COLS = level.cols;
+        SCREEN_WIDTH = N_COLS * TILE_SIZE;
+        SCREEN_HEIGHT = N_ROWS * TILE_SIZE;
+        dotsLeft = level.dotsLeft;
+        journalSize = 0;
+        journalHash = 0;
+        mazeLayerValid = false;
+        hudLayerValid = false;
+        currentGhostSpeed = level.speed;
+        frightenedDuration = level.frightenedDuration;
+    }
+
+    // Compiles a level into the spare buffers in the background; they are not touched by play
+    private void preload(int number) {
+        awaitPreload();
+        LevelPack.Level target = preloaded;
+        preloadTask = LEVEL_LOADER.submit(() -> levelPack.compileInto(number, target, N_GHOSTS));
+    }
+
+    private void awaitPreload() {
+        if (preloadTask == null) {
+            return;
+        }
+        try {
+            preloadTask.get(); // Normally long finished; only blocks if a level is cleared instantly
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not load level", e.getCause());
+        }
+        preloadTask = null;
+    }
+
+    private void initPacManAndGhosts() {
+        // Reset Pac-Man's starting position and direction
+        pacmanX = level.pacmanX;
+        pacmanY = level.pacmanY;
+        pacmanDX = 0;
+        pacmanDY = 0;
+        reqDX = 0;
+        reqDY = 0;
+        phaseTicks = 0;
+
+        for (int i = 0; i < N_GHOSTS; i++) { // Spawns repeat if the maze has fewer than N_GHOSTS
+            ghostX[i] = level.ghostX[i];
+            ghostY[i] = level.ghostY[i];
+            ghostDX[i] = 0; // Initial ghost direction
+            ghostDY[i] = -1; // Start moving up from ghost house
+            ghostFrightened[i] = false;
+        }
+    }
+
+
+    // One game step. The Swing timer calls this in play; the benchmark calls it directly.
+    void tick() {
+        if (recorder != null) {
+            recorder.tickStarting(this, inGame);
+        }
+        if (metrics != null) {
+            metrics.tickStarted();
+        }
+        playTick();
+        if (metrics != null) {
+            metrics.tickEnded(currentLevel, score);
+        }
+        if (recorder != null) {
+            recorder.tickEnded(reqDX, reqDY, inGame, score);
+        }
+    }
+
+    private void playTick() {
+        if (!inGame) {
+            return;
+        }
+        if (dying) {
+            death();
+        } else if (!win) {
+            if (autopilot != null) {
+                steerAutopilot();
+            }
+            runTicks++;
+            movePacman();
+            fireEvent(EventLog.PACMAN_STEP, 0, pacmanX, pacmanY);
+            moveGhosts();
+            checkMaze();
+        }
+    }
+
+    // Starts again from level 1, as the S key does
+    void newGame() {
+        currentLevel = 1;
+        initGame();
+    }
+
+    // Only used without timers (see Board(LevelPack, boolean)): goes on once a level is cleared
+    void startNextLevel() {
+        if (win) {
+            initGame();
+        }
+    }
+
+    boolean isInGame() {
+        return inGame;
+    }
+
+    boolean isLevelCleared() {
+        return win;
+    }
+
+    // Makes the next new game use this seed instead of the clock, so runs can be repeated
+    void setSeed(long seed) {
+        fixedSeed = seed;
+    }
+
+    void setRequestedDirection(int dx, int dy) {
+        reqDX = dx;
+        reqDY = dy;
+    }
+
+    boolean canMoveTo(int dx, int dy) {
+        return canMove(pacmanX + dx, pacmanY + dy);
+    }
+
+    int getTickMillis() {
+        return currentGhostSpeed;
+    }
+
+    int getFrightenedDuration() {
+        return frightenedDuration;
+    }
+
+    void setVersus(VersusSession versus, int controlledGhost) {
+        this.keyHandler = versus != null ? versus::keyPressed : null; // Input goes through the session
+        this.controlledGhost = controlledGhost;
+    }
+
+    // Key codes go to the handler rather than into the game; null gives the keyboard back
+    void setKeyHandler(IntConsumer keyHandler) {
+        this.keyHandler = keyHandler;
+    }
+
+    void setGhostRequest(int dx, int dy) {
+        ghostReqDX = dx;
+        ghostReqDY = dy;
+    }
+
+    void setReplaying(boolean replaying) {
+        this.replaying = replaying;
+    }
+
+    /** Everything tick() reads or changes, so a game can be rolled back. Only valid within one level. */
+    static final class State {
+        int loadedLevel, currentLevel;
+        int pacmanX, pacmanY, pacmanDX, pacmanDY, reqDX, reqDY;
+        int ghostReqDX, ghostReqDY;
+        final int[] ghostX, ghostY, ghostDX, ghostDY;
+        final boolean[] ghostFrightened;
+        int frightenedTimer, phaseTicks, score, lives, dotsLeft;
+        boolean dying, win, inGame;
+        long runTicks, randomState;
+        int journalSize;
+        long journalHash;
+
+        State(int nGhosts) {
+            ghostX = new int[nGhosts];
+            ghostY = new int[nGhosts];
+            ghostDX = new int[nGhosts];
+            ghostDY = new int[nGhosts];
+            ghostFrightened = new boolean[nGhosts];
+        }
+
+        static int bytes(int nGhosts) {
+            return 11 * 4 + nGhosts * 17 + 5 * 4 + 1 + 8 + 8 + 4 + 8;
+        }
+
+        // For ReplayArchive keyframes; readFrom() expects the same number of ghosts
+        void writeTo(ByteBuffer buf) {
+            buf.putInt(loadedLevel).putInt(currentLevel);
+            buf.putInt(pacmanX).putInt(pacmanY).putInt(pacmanDX).putInt(pacmanDY).putInt(reqDX).putInt(reqDY);
+            buf.putInt(ghostReqDX).putInt(ghostReqDY);
+            buf.putInt(ghostX.length);
+            for (int i = 0; i < ghostX.length; i++) {
+                buf.putInt(ghostX[i]).putInt(ghostY[i]).putInt(ghostDX[i]).putInt(ghostDY[i]);
+                buf.put((byte) (ghostFrightened[i] ? 1 : 0));
+            }
+            buf.putInt(frightenedTimer).putInt(phaseTicks).putInt(score).putInt(lives).putInt(dotsLeft);
+            buf.put((byte) ((dying ? 1 : 0) | (win ? 2 : 0) | (inGame ? 4 : 0)));
+            buf.putLong(runTicks).putLong(randomState).putInt(journalSize).putLong(journalHash);
+        }
+
+        void readFrom(ByteBuffer buf) {
+            loadedLevel = buf.getInt();
+            currentLevel = buf.getInt();
+            pacmanX = buf.getInt();
+            pacmanY = buf.getInt();
+            pacmanDX = buf.getInt();
+            pacmanDY = buf.getInt();
+            reqDX = buf.getInt();
+            reqDY = buf.getInt();
+            ghostReqDX = buf.getInt();
+            ghostReqDY = buf.getInt();
+            int n = buf.getInt();
+            if (n != ghostX.length) {
+                throw new IllegalArgumentException("State has " + n + " ghosts, expected " + ghostX.length);
+            }
+            for (int i = 0; i < n; i++) {
+                ghostX[i] = buf.getInt();
+                ghostY[i] = buf.getInt();
+                ghostDX[i] = buf.getInt();
+                ghostDY[i] = buf.getInt();
+                ghostFrightened[i] = buf.get() != 0;
+            }
+            frightenedTimer = buf.getInt();
+            phaseTicks = buf.getInt();
+            score = buf.getInt();
+            lives = buf.getInt();
+            dotsLeft = buf.getInt();
+            int flags = buf.get();
+            dying = (flags & 1) != 0;
+            win = (flags & 2) != 0;
+            inGame = (flags & 4) != 0;
+            runTicks = buf.getLong();
+            randomState = buf.getLong();
+            journalSize = buf.getInt();
+            journalHash = buf.getLong();
+        }
+    }
+
+    State newState() {
+        return new State(N_GHOSTS);
+    }
+
+    // Copies a few dozen fields; the maze itself is covered by the eaten-dot journal
+    void saveState(State s) {
+        s.loadedLevel = level.number;
+        s.currentLevel = currentLevel;
+        s.pacmanX = pacmanX;
+        s.pacmanY = pacmanY;
+        s.pacmanDX = pacmanDX;
+        s.pacmanDY = pacmanDY;
+        s.reqDX = reqDX;
+        s.reqDY = reqDY;
+        s.ghostReqDX = ghostReqDX;
+        s.ghostReqDY = ghostReqDY;
+        System.arraycopy(ghostX, 0, s.ghostX, 0, N_GHOSTS);
+        System.arraycopy(ghostY, 0, s.ghostY, 0, N_GHOSTS);
+        System.arraycopy(ghostDX, 0, s.ghostDX, 0, N_GHOSTS);
+        System.arraycopy(ghostDY, 0, s.ghostDY, 0, N_GHOSTS);
+        System.arraycopy(ghostFrightened, 0, s.ghostFrightened, 0, N_GHOSTS);
+        s.frightenedTimer = frightenedTimer;
+        s.phaseTicks = phaseTicks;
+        s.score = score;
+        s.lives = lives;
+        s.dotsLeft = dotsLeft;
+        s.dying = dying;
+        s.win = win;
+        s.inGame = inGame;
+        s.runTicks = runTicks;
+        s.randomState = random.getState();
+        s.journalSize = journalSize;
+        s.journalHash = journalHash;
+    }
+
+    void restoreState(State s) {
+        if (s.loadedLevel != level.number) {
+            throw new IllegalStateException("State is from level " + s.loadedLevel + ", playing " + level.number);
+        }
+        while (journalSize > s.journalSize) {
+            int entry = journal[--journalSize];
+            int tile = entry >> 2;
+            screenData[tile / N_COLS][tile % N_COLS] = (short) (entry & 3);
+            mazeLayerValid = false;
+        }
+        applyState(s);
+    }
+
+    /**
+     * Jumps to a state from any level, given the maze tiles as they were then (see copyTiles()).
+     * The undo journal starts again empty, so states saved before this can't be restored.
+     */
+    void restoreKeyframe(State s, byte[] tiles) {
+        if (s.loadedLevel != level.number) {
+            loadLevel(s.loadedLevel);
+            if (autopilot != null) {
+                autopilot.setMaze(levelDataString, frightenedDuration);
+            }
+            preload(s.loadedLevel + 1); // The spare buffers may hold a level already played on
+        }
+        if (tiles.length != N_ROWS * N_COLS) {
+            throw new IllegalArgumentException("Keyframe has " + tiles.length + " tiles, level has " + N_ROWS * N_COLS);
+        }
+        for (int i = 0; i < tiles.length; i++) {
+            screenData[i / N_COLS][i % N_COLS] = tiles[i];
+        }
+        journalSize = 0;
+        mazeLayerValid = false;
+        applyState(s);
+    }
+
+    // The maze as it stands, row by row, into a buffer of at least rows * columns bytes
+    void copyTiles(byte[] tiles) {
+        for (int y = 0; y < N_ROWS; y++) {
+            for (int x = 0; x < N_COLS; x++) {
+                tiles[y * N_COLS + x] = (byte) screenData[y][x];
+            }
+        }
+    }
+
+    int getTileCount() {
+        return N_ROWS * N_COLS;
+    }
+
+    private void applyState(State s) {
+        journalHash = s.journalHash;
+        currentLevel = s.currentLevel;
+        pacmanX = s.pacmanX;
+        pacmanY = s.pacmanY;
+        pacmanDX = s.pacmanDX;
+        pacmanDY = s.pacmanDY;
+        reqDX = s.reqDX;
+        reqDY = s.reqDY;
+        ghostReqDX = s.ghostReqDX;
+        ghostReqDY = s.ghostReqDY;
+        System.arraycopy(s.ghostX, 0, ghostX, 0, N_GHOSTS);
+        System.arraycopy(s.ghostY, 0, ghostY, 0, N_GHOSTS);
+        System.arraycopy(s.ghostDX, 0, ghostDX, 0, N_GHOSTS);
+        System.arraycopy(s.ghostDY, 0, ghostDY, 0, N_GHOSTS);
+        System.arraycopy(s.ghostFrightened, 0, ghostFrightened, 0, N_GHOSTS);
+        frightenedTimer = s.frightenedTimer;
+        phaseTicks = s.phaseTicks;
+        score = s.score;
+        lives = s.lives;
+        dotsLeft = s.dotsLeft;
+        dying = s.dying;
+        win = s.win;
+        inGame = s.inGame;
+        runTicks = s.runTicks;
+        random.setState(s.randomState);
+    }
+
+    // Hash of the game state, for comparing two copies of the same game
+    long checksum() {
+        long h = mix(level.number, currentLevel);
+        h = mix(h, pacmanX);
+        h = mix(h, pacmanY);
+        h = mix(h, pacmanDX);
+        h = mix(h, pacmanDY);
+        for (int i = 0; i < N_GHOSTS; i++) {
+            h = mix(h, ghostX[i]);
+            h = mix(h, ghostY[i]);
+            h = mix(h, ghostDX[i]);
+            h = mix(h, ghostDY[i]);
+            h = mix(h, ghostFrightened[i] ? 1 : 0);
+        }
+        h = mix(h, frightenedTimer);
+        h = mix(h, phaseTicks);
+        h = mix(h, score);
+        h = mix(h, lives);
+        h = mix(h, dotsLeft);
+        h = mix(h, (dying ? 1 : 0) | (win ? 2 : 0) | (inGame ? 4 : 0));
+        h = mix(h, runTicks);
+        h = mix(h, random.getState());
+        return mix(h, journalHash);
+    }
+
+    private static long mix(long h, long v) {
+        h = (h ^ v) * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 31);
+    }
+
+    public void setAutopilot(boolean enabled) {
+        if (enabled && autopilot == null) {
+            autopilot = new Autopilot(N_GHOSTS);
+            autopilot.setMaze(levelDataString, frightenedDuration);
+        } else if (!enabled && autopilot != null) {
+            autopilot.close();
+            autopilot = null;
+        }
+    }
+
+    // GhostTargeting codes, repeated if there are fewer than ghosts
+    void setGhostTargeting(int[] targeting) {
+        for (int i = 0; i < N_GHOSTS; i++) {
+            ghostTargeting[i] = targeting[i % targeting.length];
+        }
+    }
+
+    public void setHighScoreStore(HighScoreStore highScores) {
+        this.highScores = highScores;
+    }
+
+    public void setEventLog(EventLog eventLog) {
+        this.eventLog = eventLog;
+    }
+
+    public void setAudio(AudioEngine audio) {
+        this.audio = audio;
+    }
+
+    // For a game that stops without the event that would end its sounds, e.g. when abandoned
+    void stopSounds() {
+        if (audio != null) audio.stopAll();
+    }
+
+    void setMetrics(GameMetrics.Session metrics) {
+        this.metrics = metrics;
+    }
+
+    void setRecorder(ReplayRecorder recorder) {
+        this.recorder = recorder;
+        if (recorder != null && inGame && currentLevel == 1 && runTicks == 0) {
+            recorder.levelStarting(true, levelPack, ghostTargeting, seed); // The game the constructor began
+        }
+    }
+
+    // Repaints after a tick. If the last tick's frame is still waiting, that frame is dropped.
+    void requestFrame() {
+        if (framePending && metrics != null) {
+            metrics.frameDropped();
+        }
+        framePending = true;
+        repaint();
+    }
+
+    public void setIntegerScaling(boolean integerScaling) {
+        this.integerScaling = integerScaling;
+        sprites = null;
+        repaint();
+    }
+
+    // Gameplay events go to the event log and the audio engine
+    private void fireEvent(int type, int arg, int x, int y) {
+        if (replaying) return; // Already heard and logged the first time round
+        if (eventLog != null) eventLog.emit(type, arg, runTicks, x, y);
+        if (audio != null) audio.onEvent(type);
+    }
+
+    public String[] getLevelData() {
+        return levelDataString;
+    }
+
+    static String[] defaultLevel() {
+        return DEFAULT_LEVEL.clone();
+    }
+
+    // Sets reqDX/reqDY exactly like a key press would
+    private void steerAutopilot() {
+        long budgetNanos = currentGhostSpeed * AUTOPILOT_BUDGET_PERCENT * 10_000L;
+        int dir = autopilot.chooseDirection(screenData, pacmanX, pacmanY, pacmanDX, pacmanDY,
+                ghostX, ghostY, ghostDX, ghostDY, ghostFrightened, frightenedTimer,
+                ghostTargeting, phaseTicks, budgetNanos);
+        if (dir >= 0) {
+            reqDX = Autopilot.DIR_X[dir];
+            reqDY = Autopilot.DIR_Y[dir];
+        }
+    }
+
+    private void death() {
+        lives--;
+        if (lives == 0) {
+            if (highScores != null) {
+                highScores.record(score, currentLevel, runTicks, seed);
+            }
+            inGame = false;
+            currentLevel = 1; // Reset level on game over
+            preload(1);
+        } else {
+            initPacManAndGhosts();
+            dying = false;
+        }
+    }
+
+    private void checkMaze() {
+        if (screenData[pacmanY][pacmanX] == 0) {
+            screenData[pacmanY][pacmanX] = 16;
+            tileEaten(pacmanX, pacmanY, 0);
+            score += 10;
+            dotsLeft--;
+            fireEvent(EventLog.DOT_EATEN, 0, pacmanX, pacmanY);
+        } else if (screenData[pacmanY][pacmanX] == 2) {
+            screenData[pacmanY][pacmanX] = 16;
+            tileEaten(pacmanX, pacmanY, 2);
+            score += 50;
+            dotsLeft--;
+            fireEvent(EventLog.PELLET_EATEN, 0, pacmanX, pacmanY);
+            fireEvent(EventLog.FRIGHTENED_START, 0, pacmanX, pacmanY);
+            frightenedTimer = frightenedDuration;
+            for (int i = 0; i < N_GHOSTS; i++) {
+                ghostFrightened[i] = true;
+                ghostDX[i] *= -1;
+                ghostDY[i] *= -1;
+            }
+        }
+
+        if (dotsLeft == 0) {
+            fireEvent(EventLog.LEVEL_COMPLETE, 0, pacmanX, pacmanY);
+            win = true;
+            currentLevel++;
+            // Start next level after delay
+            if (realTime) {
+                levelTimer.restart();
+            }
+        }
+    }
+
+    private void movePacman() {
+        int newPacmanX, newPacmanY;
+
+        // Handle tunnel wrapping
+        if (pacmanX == 0 && pacmanDX == -1) { // Left tunnel exit
+            pacmanX = N_COLS -1;
+        } else if (pacmanX == N_COLS - 1 && pacmanDX == 1) { // Right tunnel exit
+            pacmanX = 0;
+        }
+
+        // Try to apply requested direction
+        if (reqDX != 0 || reqDY != 0) {
+            newPacmanX = pacmanX + reqDX;
+            newPacmanY = pacmanY + reqDY;
+            if (newPacmanX >= 0 && newPacmanX < N_COLS && newPacmanY >= 0 && newPacmanY < N_ROWS &&
+                screenData[newPacmanY][newPacmanX] != 1) { // Not a wall
+                pacmanDX = reqDX;
+                pacmanDY = reqDY;
+            }
+        }
+
+        // Move in current direction if possible
+        newPacmanX = pacmanX + pacmanDX;
+        newPacmanY = pacmanY + pacmanDY;
+
+        if (newPacmanX >= 0 && newPacmanX < N_COLS && newPacmanY >= 0 && newPacmanY < N_ROWS &&
+            screenData[newPacmanY][newPacmanX] != 1) { // Not a wall
+            pacmanX = newPacmanX;
+            pacmanY = newPacmanY;
+        }
+    }
+
+
+    private void moveGhosts() {
+        if (frightenedTimer > 0) {
+            frightenedTimer--;
+            if (frightenedTimer == 0) {
+                for (int i = 0; i < N_GHOSTS; i++) {
+                    ghostFrightened[i] = false;
+                }
+                fireEvent(EventLog.FRIGHTENED_END, 0, pacmanX, pacmanY);
+            }
+        } else {
+            phaseTicks++;
+        }
+
+        // Every ghost's target from where everyone stands now, in one pass
+        GhostTargeting.targets(ghostTargeting, N_GHOSTS, ghostX, ghostY, pacmanX, pacmanY, pacmanDX, pacmanDY,
+                               N_ROWS, N_COLS, GhostTargeting.isScatter(phaseTicks), targetX, targetY);
+
+        for (int i = 0; i < N_GHOSTS; i++) {
+           
+            int distanceX = Math.abs(pacmanX - ghostX[i]);
+            int distanceY = Math.abs(pacmanY - ghostY[i]);
+            
+            if (inGame) {
+                if (ghostFrightened[i]) {
+                   
+                    if (distanceX <= 0 && distanceY <= 0) {
+                        score += 200; // Score for eating a ghost
+                        fireEvent(EventLog.GHOST_EATEN, i, ghostX[i], ghostY[i]);
+                        // Send ghost back to starting position
+                        ghostX[i] = level.ghostX[i];
+                        ghostY[i] = level.ghostY[i];
+                        ghostFrightened[i] = false;
+                    }
+                } else {
+                   
+                    if (distanceX <= 1 && distanceY <= 1) {
+                        fireEvent(EventLog.PACMAN_DEATH, i, pacmanX, pacmanY);
+                        dying = true;
+                        return; 
+                    }
+                }
+            }
+
+            if (i == controlledGhost) {
+                moveControlledGhost(i);
+                continue;
+            }
+
+            // Ghost movement logic
+            int newGhostX, newGhostY;
+            int numPossibleMoves = 0;
+
+            // Check possible moves (not into walls, not reversing unless at dead end)
+            if (ghostDX[i] != 1 && canMove(ghostX[i] - 1, ghostY[i])) { // Left
+                possibleDX[numPossibleMoves] = -1; possibleDY[numPossibleMoves] = 0; numPossibleMoves++;
+            }
+            if (ghostDX[i] != -1 && canMove(ghostX[i] + 1, ghostY[i])) { // Right
+                possibleDX[numPossibleMoves] = 1; possibleDY[numPossibleMoves] = 0; numPossibleMoves++;
+            }
+            if (ghostDY[i] != 1 && canMove(ghostX[i], ghostY[i] - 1)) { // Up
+                possibleDX[numPossibleMoves] = 0; possibleDY[numPossibleMoves] = -1; numPossibleMoves++;
+            }
+            if (ghostDY[i] != -1 && canMove(ghostX[i], ghostY[i] + 1)) { // Down
+                possibleDX[numPossibleMoves] = 0; possibleDY[numPossibleMoves] = 1; numPossibleMoves++;
+            }
+
+
+            if (numPossibleMoves == 0) { // Stuck, must reverse
+                 if (canMove(ghostX[i] + ghostDX[i] * -1, ghostY[i] + ghostDY[i] * -1)) {
+                    ghostDX[i] *= -1;
+                    ghostDY[i] *= -1;
+                 } else {
+                    // Truly stuck, should not happen in a well-formed Pac-Man maze
+                 }
+            } else if (numPossibleMoves == 1 && (ghostDX[i] != 0 || ghostDY[i] != 0) ) { // Only one way (corridor)
+                 // If the only possible move is not the current direction, change to it.
+                 // This handles cases where the ghost was previously stopped or needs to turn.
+                if (possibleDX[0] != ghostDX[i] || possibleDY[0] != ghostDY[i]) {
+                    ghostDX[i] = possibleDX[0];
+                    ghostDY[i] = possibleDY[0];
+                }
+            }
+            else { // At an intersection or needs to pick a new path
+                int bestMoveIndex = -1;
+                if (ghostFrightened[i]) { // Run away
+                    int maxDist = -1;
+                    for (int k = 0; k < numPossibleMoves; k++) {
+                        int dist = Math.abs(ghostX[i] + possibleDX[k] - pacmanX) + Math.abs(ghostY[i] + possibleDY[k] - pacmanY);
+                        if (dist > maxDist) {
+                            maxDist = dist;
+                            bestMoveIndex = k;
+                        }
+                    }
+                } else { // Head for the target tile
+                    int minDist = Integer.MAX_VALUE;
+                    for (int k = 0; k < numPossibleMoves; k++) {
+                        // Prefer moves that reduce distance to the target
+            
+                        int dist = Math.abs(ghostX[i] + possibleDX[k] - targetX[i]) + Math.abs(ghostY[i] + possibleDY[k] - targetY[i]);
+
+                        
+                        if (dist < minDist) {
+                            minDist = dist;
+                            bestMoveIndex = k;
+                        } else if (dist == minDist && random.nextBoolean()) {
+                             bestMoveIndex = k;
+                        }
+                    }
+                }
+                 if (bestMoveIndex != -1) {
+                    ghostDX[i] = possibleDX[bestMoveIndex];
+                    ghostDY[i] = possibleDY[bestMoveIndex];
+                } else if (numPossibleMoves > 0) { // Fallback to random if targeting fails
+                    int randomIndex = random.nextInt(numPossibleMoves);
+                    ghostDX[i] = possibleDX[randomIndex];
+                    ghostDY[i] = possibleDY[randomIndex];
+                }
+            }
+
+
+            // Actually move the ghost
+            newGhostX = ghostX[i] + ghostDX[i];
+            newGhostY = ghostY[i] + ghostDY[i];
+
+            // Handle tunnel wrapping for ghosts
+            if (newGhostX == -1 && ghostDX[i] == -1) newGhostX = N_COLS - 1;
+            if (newGhostX == N_COLS && ghostDX[i] == 1) newGhostX = 0;
+
+
+            if (canMove(newGhostX, newGhostY)) {
+                ghostX[i] = newGhostX;
+                ghostY[i] = newGhostY;
+            } else {
+                // If it can't move in the chosen direction (should be rare with above logic), try random available.
+                // This is a fallback.
+                if (numPossibleMoves > 0) {
+                    int randomIndex = random.nextInt(numPossibleMoves);
+                    ghostDX[i] = possibleDX[randomIndex];
+                    ghostDY[i] = possibleDY[randomIndex];
+                    newGhostX = ghostX[i] + ghostDX[i];
+                    newGhostY = ghostY[i] + ghostDY[i];
+                     if (canMove(newGhostX, newGhostY)) {
+                        ghostX[i] = newGhostX;
+                        ghostY[i] = newGhostY;
+                    }
+                }
+            }
+        }
+    }
+    
+    // A player's ghost moves like Pac-Man: the requested direction if open, otherwise straight on
+    private void moveControlledGhost(int i) {
+        if ((ghostReqDX != 0 || ghostReqDY != 0) && canMove(wrapX(ghostX[i] + ghostReqDX), ghostY[i] + ghostReqDY)) {
+            ghostDX[i] = ghostReqDX;
+            ghostDY[i] = ghostReqDY;
+        }
+        int newX = wrapX(ghostX[i] + ghostDX[i]);
+        int newY = ghostY[i] + ghostDY[i];
+        if (canMove(newX, newY)) {
+            ghostX[i] = newX;
+            ghostY[i] = newY;
+        }
+    }
+
+    // Tunnel wrapping
+    private int wrapX(int x) {
+        return x < 0 ? N_COLS - 1 : x >= N_COLS ? 0 : x;
+    }
+
+    private boolean canMove(int x, int y) {
+        return x >= 0 && x < N_COLS && y >= 0 && y < N_ROWS && screenData[y][x] != 1;
+    }
+
+
+    @Override
+    public void paintComponent(Graphics g) {
+        long frameStart = System.nanoTime();
+        framePending = false;
+        super.paintComponent(g);
+        Graphics2D g2d = (Graphics2D) g;
+        d = getSize();
+
+        // Draw in device pixels, so cached layers are copied 1:1 rather than resampled
+        AffineTransform screen = g2d.getTransform();
+        double deviceScale = screen.getScaleX();
+        updateLayout(deviceScale);
+        deviceTransform.setToTranslation(screen.getTranslateX(), screen.getTranslateY());
+        g2d.setTransform(deviceTransform);
+
+        // Fill entire background
+        g2d.setColor(Color.BLACK);
+        g2d.fillRect(0, 0, (int) Math.ceil(d.width * deviceScale), (int) Math.ceil(d.height * deviceScale));
+
+        drawMaze(g2d);
+        drawScore(g2d);
+
+        boolean showWin = win;
+        boolean showIntro = !inGame && !win;
+        if (inGame && !win) {
+            drawPacman(g2d);
+            drawGhosts(g2d);
+        }
+
+        // The full-screen messages are drawn as before, scaled on the fly
+        if (showWin || showIntro) {
+            g2d.translate(originX, originY);
+            g2d.scale(sprites.scale, sprites.scale);
+            if (showWin) {
+                showWinScreen(g2d);
+            } else {
+                showIntroScreen(g2d);
+            }
+        }
+
+        g2d.setTransform(screen);
+
+        Toolkit.getDefaultToolkit().sync();
+        if (metrics != null) {
+            metrics.frameRendered(System.nanoTime() - frameStart);
+        }
+    }
+
+    // Picks the largest tile size that fits the window and drops cached layers when it changes
+    private void updateLayout(double deviceScale) {
+        int layoutWidth = SCREEN_WIDTH + PADDING_X * 2;
+        int layoutHeight = SCREEN_HEIGHT + PADDING_Y + PADDING_BOTTOM + SCORE_HEIGHT;
+        double fit = Math.min(d.width * deviceScale / layoutWidth, d.height * deviceScale / layoutHeight);
+        int tilePx = (int) (TILE_SIZE * fit);
+        if (integerScaling && tilePx >= TILE_SIZE) {
+            tilePx -= tilePx % TILE_SIZE;
+        }
+        tilePx = Math.max(tilePx, 4);
+
+        if (sprites == null || sprites.tilePx != tilePx) {
+            sprites = new SpriteCache(tilePx, N_GHOSTS, getGraphicsConfiguration());
+            mazeLayerValid = false;
+            hudLayerValid = false;
+        }
+        double scale = sprites.scale;
+        originX = (int) ((d.width * deviceScale - layoutWidth * scale) / 2 + PADDING_X * scale);
+        originY = (int) ((d.height * deviceScale - layoutHeight * scale) / 2 + PADDING_Y * scale);
+    }
+
+    private void drawMaze(Graphics2D g2d) {
+        if (!mazeLayerValid) {
+            rebuildMazeLayer();
+        } else if (eatenCount > 0) {
+            clearEatenTiles();
+        }
+        g2d.drawImage(mazeLayer, originX, originY, null);
+    }
+
+    private void rebuildMazeLayer() {
+        int tilePx = sprites.tilePx;
+        int overhang = (int) Math.ceil(sprites.scale); // Wall outlines reach one pixel past the last tile
+        int width = N_COLS * tilePx + overhang;
+        int height = N_ROWS * tilePx + overhang;
+        if (mazeLayer == null || mazeLayer.getWidth() != width || mazeLayer.getHeight() != height) {
+            mazeLayer = sprites.newImage(width, height, true);
+        }
+        Graphics2D g = mazeLayer.createGraphics();
+        g.setColor(Color.BLACK);
+        g.fillRect(0, 0, width, height);
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.scale(sprites.scale, sprites.scale);
+        // Pellets are drawn at animation step 0; at ANIMATION_SPEED 2 their pulse never changes size anyway
+        drawMazeTiles(g, screenData, TILE_SIZE, 0);
+        g.dispose();
+        mazeLayerValid = true;
+        eatenCount = 0;
+    }
+
+    // Blacks out the middle of each eaten tile, where the dot or pellet was; walls never reach there
+    private void clearEatenTiles() {
+        Graphics2D g = mazeLayer.createGraphics();
+        g.setColor(Color.BLACK);
+        int tilePx = sprites.tilePx;
+        int half = (int) Math.ceil(5 * sprites.scale);
+        for (int i = 0; i < eatenCount; i++) {
+            int row = eatenTiles[i] / N_COLS;
+            int col = eatenTiles[i] % N_COLS;
+            int cx = col * tilePx + tilePx / 2;
+            int cy = row * tilePx + tilePx / 2;
+            g.fillRect(cx - half, cy - half, half * 2, half * 2);
+        }
+        g.dispose();
+        eatenCount = 0;
+    }
+
+    // For views that redraw only what changed: the i-th tile eaten this level, as row * columns + column
+    int eatenTile(int i) {
+        return journal[i] >> 2;
+    }
+
+    int tileAt(int x, int y) {
+        return screenData[y][x];
+    }
+
+    private void tileEaten(int x, int y, int was) {
+        int tile = y * N_COLS + x;
+        journal[journalSize++] = tile << 2 | was;
+        journalHash = mix(journalHash, tile);
+
+        if (eatenCount == eatenTiles.length) {
+            mazeLayerValid = false; // Not painted for a while; redraw the lot next time
+            return;
+        }
+        eatenTiles[eatenCount++] = tile;
+    }
+
+    // Shared with offline tools (HeatmapTool) so their images use the same tiles as the game
+    static void drawMazeTiles(Graphics2D g2d, short[][] screenData, int tileSize, int animationStep) {
+        int rows = screenData.length;
+        int cols = screenData[0].length;
+
+        // Draw background
+        g2d.setColor(Color.BLACK);
+        g2d.fillRect(0, 0, cols * tileSize, rows * tileSize);
+
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                int x = c * tileSize;
+                int y = r * tileSize;
+
+                if (screenData[r][c] == 1) { // Wall
+                    // Draw wall with rounded corners
+                    g2d.setColor(WALL_COLOR);
+                    g2d.fillRoundRect(x, y, tileSize, tileSize, 8, 8);
+                    
+                    // Add wall highlight
+                    g2d.setColor(new Color(0, 0, 200));
+                    g2d.drawRoundRect(x, y, tileSize, tileSize, 8, 8);
+                } else if (screenData[r][c] == 0) { // Dot
+                    g2d.setColor(DOT_COLOR);
+                    g2d.fillOval(x + tileSize/2 - 2, y + tileSize/2 - 2, 4, 4);
+                } else if (screenData[r][c] == 2) { // Power Pellet
+                    // Animated power pellet
+                    int pulseSize = 6 + (int)(Math.sin(animationStep * 0.5) * 2);
+                    g2d.setColor(POWER_PELLET_COLOR);
+                    g2d.fillOval(x + tileSize/2 - pulseSize/2, 
+                               y + tileSize/2 - pulseSize/2, 
+                               pulseSize, pulseSize);
+                }
+            }
+        }
+    }
+
+    private void drawPacman(Graphics2D g2d) {
+        animationStep = (animationStep + 1) % ANIMATION_SPEED;
+        if (animationStep == 0) {
+            if (mouthClosing) {
+                mouthAngle -= MOUTH_ANGLE_CHANGE;
+                if (mouthAngle <= 0) {
+                    mouthAngle = 0;
+                    mouthClosing = false;
+                }
+            } else {
+                mouthAngle += MOUTH_ANGLE_CHANGE;
+                if (mouthAngle >= 45) {
+                    mouthAngle = 45;
+                    mouthClosing = true;
+                }
+            }
+        }
+
+        BufferedImage sprite = sprites.pacman(facing(pacmanDX, pacmanDY), mouthAngle);
+        drawSprite(g2d, sprite, pacmanX, pacmanY);
+    }
+
+    private void drawGhosts(Graphics2D g2d) {
+        int waveOffset = (int)(Math.sin(animationStep * 0.5) * 2);
+        for (int i = 0; i < N_GHOSTS; i++) {
+            BufferedImage sprite;
+            if (ghostFrightened[i]) {
+                sprite = sprites.frightenedGhost(isFlashing(frightenedTimer, frightenedDuration), waveOffset);
+            } else {
+                sprite = sprites.ghost(i, facing(ghostDX[i], ghostDY[i]), waveOffset);
+            }
+            drawSprite(g2d, sprite, ghostX[i], ghostY[i]);
+        }
+    }
+
+    // Frightened ghosts flash in the second half of their frightened time
+    static boolean isFlashing(int frightenedTimer, int frightenedDuration) {
+        return frightenedTimer < frightenedDuration / 2 && frightenedTimer % 10 < 5;
+    }
+
+    private void drawSprite(Graphics2D g2d, BufferedImage sprite, int tileX, int tileY) {
+        g2d.drawImage(sprite, originX + tileX * sprites.tilePx + sprites.offset,
+                      originY + tileY * sprites.tilePx + sprites.offset, null);
+    }
+
+    static int facing(int dx, int dy) {
+        if (dx == 1) return SpriteCache.RIGHT;
+        if (dx == -1) return SpriteCache.LEFT;
+        if (dy == -1) return SpriteCache.UP;
+        if (dy == 1) return SpriteCache.DOWN;
+        return SpriteCache.NONE;
+    }
+
+    // Vector drawing of the sprites, in logical pixels; SpriteCache renders these once per tile size
+    static void paintPacman(Graphics2D g2d, int centerX, int centerY, int startAngle, int arcAngle) {
+        int radius = TILE_SIZE / 2 - 2;
+        g2d.setColor(PACMAN_COLOR);
+        g2d.fillArc(centerX - radius, centerY - radius, 
+                   radius * 2, radius * 2, 
+                   startAngle, arcAngle);
+    }
+
+    static void paintGhost(Graphics2D g2d, int centerX, int centerY, int ghost, boolean frightened,
+                           boolean flash, int facing, int waveOffset) {
+        int radius = TILE_SIZE / 2 - 2;
+
+        // Draw ghost body
+        if (frightened) {
+            if (flash) {
+                g2d.setColor(Color.WHITE);
+            } else {
+                g2d.setColor(FRIGHTENED_GHOST_COLOR);
+            }
+        } else {
+            g2d.setColor(GHOST_COLORS[ghost]);
+        }
+
+       
+        int bodyHeight = radius * 2;
+        int bodyWidth = radius * 2;
+        
+        
+        g2d.fillRoundRect(centerX - radius, centerY - radius, 
+                        bodyWidth, bodyHeight - 4, 
+                        radius, radius);
+
+        
+        int waveHeight = 6;
+        int bottomY = centerY + radius - 4;
+        
+        
+        for (int j = 0; j < 3; j++) {
+            int waveX = centerX - radius + j * (radius * 2 / 3);
+            int waveWidth = radius * 2 / 3;
+           
+            g2d.fillArc(waveX, bottomY - waveHeight/2 + waveOffset, 
+                       waveWidth, waveHeight, 
+                       0, 180);
+        }
+
+        
+        if (!frightened) {
+            for (int j = 0; j < 4; j++) {
+                int skirtY = bottomY + j;
+                int skirtWidth = bodyWidth - j * 3;
+                float alpha = 0.8f - (j * 0.2f);
+                
+               
+                Color skirtColor = new Color(
+                    GHOST_COLORS[ghost].getRed(),
+                    GHOST_COLORS[ghost].getGreen(),
+                    GHOST_COLORS[ghost].getBlue(),
+                    (int)(alpha * 255)
+                );
+                g2d.setColor(skirtColor);
+                
+               
+                g2d.fillRoundRect(centerX - skirtWidth/2, skirtY, 
+                                skirtWidth, 2, 
+                                4, 4);
+            }
+        }
+
+       
+        if (!frightened) {
+           
+            g2d.setColor(GHOST_EYES_COLOR);
+            int eyeSize = radius / 2;
+            int eyeOffset = radius / 3;
+            
+            
+            g2d.fillOval(centerX - eyeOffset - eyeSize/2, 
+                        centerY - eyeSize/3, 
+                        eyeSize, eyeSize);
+            
+            g2d.fillOval(centerX + eyeOffset - eyeSize/2, 
+                        centerY - eyeSize/3, 
+                        eyeSize, eyeSize);
+
+           
+            g2d.setColor(GHOST_PUPIL_COLOR);
+            int pupilSize = eyeSize / 2;
+            int pupilOffsetX = 0;
+            int pupilOffsetY = 0;
+            
+           
+            if (facing == SpriteCache.RIGHT) {
+                pupilOffsetX = 2;
+                pupilOffsetY = 0;
+            } else if (facing == SpriteCache.LEFT) {
+                pupilOffsetX = -2;
+                pupilOffsetY = 0;
+            } else if (facing == SpriteCache.DOWN) {
+                pupilOffsetX = 0;
+                pupilOffsetY = 2;
+            } else if (facing == SpriteCache.UP) {
+                pupilOffsetX = 0;
+                pupilOffsetY = -2;
+            }
+
+           
+            g2d.fillOval(centerX - eyeOffset - pupilSize/2 + pupilOffsetX, 
+                        centerY - pupilSize/3 + pupilOffsetY, 
+                        pupilSize, pupilSize);
+            
+            g2d.fillOval(centerX + eyeOffset - pupilSize/2 + pupilOffsetX, 
+                        centerY - pupilSize/3 + pupilOffsetY, 
+                        pupilSize, pupilSize);
+        } else {
+            
+            g2d.setColor(Color.WHITE);
+            int eyeSize = radius / 3;
+            
+          
+            g2d.fillOval(centerX - eyeSize - 2, centerY - eyeSize/3, eyeSize, eyeSize);
+            g2d.fillOval(centerX + 2, centerY - eyeSize/3, eyeSize, eyeSize);
+            
+           
+            g2d.setColor(Color.WHITE);
+            int mouthWidth = radius;
+            int mouthHeight = 3;
+            g2d.fillRoundRect(centerX - mouthWidth/2, centerY + radius/3, 
+                            mouthWidth, mouthHeight, 
+                            2, 2);
+        }
+    }
+
+    // The score bar under the maze; redrawn into its image only when the score or lives change
+    private void drawScore(Graphics2D g2d) {
+        if (!hudLayerValid || hudScore != score || hudLives != lives) {
+            int width = (int) Math.ceil(SCREEN_WIDTH * sprites.scale);
+            int height = (int) Math.ceil(SCORE_HEIGHT * sprites.scale);
+            if (hudLayer == null || hudLayer.getWidth() != width || hudLayer.getHeight() != height) {
+                hudLayer = sprites.newImage(width, height, true);
+            }
+            Graphics2D g = hudLayer.createGraphics();
+            g.setColor(Color.BLACK);
+            g.fillRect(0, 0, width, height);
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.scale(sprites.scale, sprites.scale);
+
+            g.setFont(new Font("Arial", Font.BOLD, 24)); 
+            g.setColor(Color.WHITE);
+            String s = "SCORE: " + score;
+            g.drawString(s, 10, 40);
+
+            for (int i = 0; i < lives; i++) {
+                g.setColor(PACMAN_COLOR);
+                int x = SCREEN_WIDTH - (i + 1) * (TILE_SIZE + 15);
+                int y = 25; 
+                g.fillArc(x, y, TILE_SIZE - 4, TILE_SIZE - 4, 45, 270);
+            }
+            g.dispose();
+            hudScore = score;
+            hudLives = lives;
+            hudLayerValid = true;
+        }
+        g2d.drawImage(hudLayer, originX, originY + (int) (SCREEN_HEIGHT * sprites.scale), null);
+    }
+
+    private void showIntroScreen(Graphics2D g2d) {
+       
+        int gameWidth = SCREEN_WIDTH;
+        int gameHeight = SCREEN_HEIGHT;
+        
+      
+        GradientPaint gradient = new GradientPaint(0, 0, new Color(0, 0, 40), 
+                                                  gameWidth, gameHeight, new Color(0, 0, 80));
+        g2d.setPaint(gradient);
+        g2d.fillRect(0, 0, gameWidth, gameHeight);
+    
+       
+        g2d.setColor(new Color(255, 255, 0, 100));
+        g2d.setStroke(new BasicStroke(4));
+        g2d.drawRoundRect(10, 10, gameWidth - 20, gameHeight - 20, 20, 20);
+    
+        
+        String title = "PAC-MAN";
+        Font titleFont = new Font("Arial", Font.BOLD, Math.min(48, gameWidth / 10));
+        FontMetrics titleMetrics = getFontMetrics(titleFont);
+        g2d.setFont(titleFont);
+        
+        int titleY = gameHeight / 4;
+        
+        // Draw shadow
+        g2d.setColor(new Color(0, 0, 0, 150));
+        g2d.drawString(title, gameWidth/2 - titleMetrics.stringWidth(title)/2 + 4, titleY + 4);
+        
+        // Draw main text
+        g2d.setColor(Color.YELLOW);
+        g2d.drawString(title, gameWidth/2 - titleMetrics.stringWidth(title)/2, titleY);
+    
+        // Draw status message
+        String statusMsg;
+        if (win) {
+            statusMsg = "Level " + currentLevel + " Complete!";
+        } else if (!inGame && lives > 0) {
+            statusMsg = "Starting Level " + currentLevel;
+        } else {
+            statusMsg = "Game Over";
+        }
+    
+        Font statusFont = new Font("Arial", Font.BOLD, Math.min(32, gameWidth / 15));
+        FontMetrics statusMetrics = getFontMetrics(statusFont);
+        g2d.setFont(statusFont);
+        g2d.setColor(Color.WHITE);
+        g2d.drawString(statusMsg, gameWidth/2 - statusMetrics.stringWidth(statusMsg)/2, gameHeight/2);
+    
+        // Draw score
+        Font scoreFont = new Font("Arial", Font.BOLD, Math.min(24, gameWidth / 20));
+        FontMetrics scoreMetrics = getFontMetrics(scoreFont);
+        g2d.setFont(scoreFont);
+        String scoreMsg = "Score: " + score;
+        g2d.drawString(scoreMsg, gameWidth/2 - scoreMetrics.stringWidth(scoreMsg)/2, gameHeight/2 + 50);
+
+        if (highScores != null) {
+            String highMsg = "High Score: " + Math.max(highScores.best(), score);
+            g2d.drawString(highMsg, gameWidth/2 - scoreMetrics.stringWidth(highMsg)/2, gameHeight/2 + 80);
+        }
+    
+        // Draw lives with animated Pac-Man icons
+        int pacmanSize = Math.min(30, gameWidth / 20);
+        int spacing = pacmanSize + 20;
+        int pacmanTotalWidth = lives * spacing;
+        int startPacmanX = gameWidth/2 - pacmanTotalWidth/2;
+        
+        for (int i = 0; i < lives; i++) {
+            int x = startPacmanX + i * spacing;
+            int y = gameHeight/2 + 100;
+            
+            // Animate Pac-Man mouth
+            int mouthAngle = (int)(Math.sin(System.currentTimeMillis() / 200.0) * 30 + 30);
+            g2d.setColor(Color.YELLOW);
+            g2d.fillArc(x, y, pacmanSize, pacmanSize, mouthAngle, 360 - (mouthAngle * 2));
+        }
+    
+        if (!inGame && !win) {
+            Font smallFont = new Font("Arial", Font.BOLD, Math.min(20, gameWidth / 25));
+            FontMetrics smallMetrics = getFontMetrics(smallFont);
+            g2d.setFont(smallFont);
+            
+            String restartMsg;
+            if (lives == 0) {
+                restartMsg = "Game Over - Press S to Start New Game";
+                currentLevel = 1;
+            } else {
+                restartMsg = "Press S to Play";
+            }
+            
+            // Blinking effect
+            if ((System.currentTimeMillis() / 500) % 2 == 0) {
+                g2d.setColor(Color.WHITE);
+                g2d.drawString(restartMsg, 
+                             gameWidth/2 - smallMetrics.stringWidth(restartMsg)/2, 
+                             gameHeight - 50);
+            }
+        }
+    
+        // Draw decorative dots
+        drawDecorativeDots(g2d, 0, 0, gameWidth, gameHeight);
+    }
+    
+    private void showWinScreen(Graphics2D g2d) {
+        // Use the available game area dimensions instead of window dimensions
+        int gameWidth = SCREEN_WIDTH;
+        int gameHeight = SCREEN_HEIGHT;
+        
+        // Create a gradient background for game area
+        GradientPaint gradient = new GradientPaint(0, 0, new Color(0, 40, 0), 
+                                                  gameWidth, gameHeight, new Color(0, 80, 0));
+        g2d.setPaint(gradient);
+        g2d.fillRect(0, 0, gameWidth, gameHeight);
+    
+        // Draw a decorative border
+        g2d.setColor(new Color(0, 255, 0, 100));
+        g2d.setStroke(new BasicStroke(4));
+        g2d.drawRoundRect(10, 10, gameWidth - 20, gameHeight - 20, 20, 20);
+    
+        // Draw victory message with shadow
+        String victoryMsg = "LEVEL " + currentLevel + " COMPLETE!";
+        Font victoryFont = new Font("Arial", Font.BOLD, Math.min(40, gameWidth / 12));
+        FontMetrics victoryMetrics = getFontMetrics(victoryFont);
+        g2d.setFont(victoryFont);
+        
+        int victoryY = gameHeight / 3;
+        
+        // Draw shadow
+        g2d.setColor(new Color(0, 0, 0, 150));
+        g2d.drawString(victoryMsg, gameWidth/2 - victoryMetrics.stringWidth(victoryMsg)/2 + 4, victoryY + 4);
+        
+        // Draw main text
+        g2d.setColor(new Color(0, 255, 0));
+        g2d.drawString(victoryMsg, gameWidth/2 - victoryMetrics.stringWidth(victoryMsg)/2, victoryY);
+    
+        // Draw score with animation
+        Font scoreFont = new Font("Arial", Font.BOLD, Math.min(32, gameWidth / 15));
+        FontMetrics scoreMetrics = getFontMetrics(scoreFont);
+        g2d.setFont(scoreFont);
+        String scoreMsg = "Score: " + score;
+        
+        // Animate score text
+        double scale = 1.0 + Math.sin(System.currentTimeMillis() / 200.0) * 0.1;
+        AffineTransform originalTransform = g2d.getTransform();
+        g2d.translate(gameWidth/2, gameHeight/2);
+        g2d.scale(scale, scale);
+        g2d.setColor(Color.WHITE);
+        g2d.drawString(scoreMsg, -scoreMetrics.stringWidth(scoreMsg)/2, 0);
+        g2d.setTransform(originalTransform);
+    
+        // Draw next level info
+        Font infoFont = new Font("Arial", Font.BOLD, Math.min(24, gameWidth / 20));
+        FontMetrics infoMetrics = getFontMetrics(infoFont);
+        g2d.setFont(infoFont);
+        g2d.setColor(Color.WHITE);
+        
+        String nextLevelMsg = "Next Level: " + (currentLevel + 1);
+        String speedMsg = "Ghosts will move faster!";
+        
+        g2d.drawString(nextLevelMsg, gameWidth/2 - infoMetrics.stringWidth(nextLevelMsg)/2, gameHeight/2 + 50);
+        g2d.drawString(speedMsg, gameWidth/2 - infoMetrics.stringWidth(speedMsg)/2, gameHeight/2 + 90);
+    
+        // Draw decorative elements
+        drawVictoryDecorations(g2d, 0, 0, gameWidth, gameHeight);
+    }
+
+    private void drawDecorativeDots(Graphics2D g2d, int startX, int startY, int width, int height) {
+        // Draw small dots around the screen within the usable area
+        g2d.setColor(new Color(255, 255, 255, 100));
+        Random rand = new Random(123);
+        for (int i = 0; i < 50; i++) {
+            int x = startX + rand.nextInt(width);
+            int y = startY + rand.nextInt(height);
+            int size = rand.nextInt(4) + 2;
+            g2d.fillOval(x, y, size, size);
+        }
+    }
+
+    private void drawVictoryDecorations(Graphics2D g2d, int startX, int startY, int width, int height) {
+        // Draw animated victory stars within the usable area
+        long time = System.currentTimeMillis();
+        Random rand = new Random(456); 
+        
+        for (int i = 0; i < 20; i++) {
+            int x = startX + rand.nextInt(width);
+            int y = startY + rand.nextInt(height);
+            double scale = 0.5 + Math.sin(time/200.0 + i) * 0.3;
+            
+            AffineTransform originalTransform = g2d.getTransform();
+            g2d.translate(x, y);
+            g2d.scale(scale, scale);
+            
+            // Draw star
+            g2d.setColor(new Color(255, 255, 0, 150));
+            int[] xPoints = {0, 5, 10, 5, 8, 0, -8, -5, -10, -5};
+            int[] yPoints = {-10, -5, 0, 5, 10, 7, 10, 5, 0, -5};
+            g2d.fillPolygon(xPoints, yPoints, 10);
+            
+            g2d.setTransform(originalTransform);
+        }
+    }
+
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        tick();
+        requestFrame(); // This will call paintComponent
+    }
+
+    class TAdapter extends KeyAdapter {
+        @Override
+        public void keyPressed(KeyEvent e) {
+            int key = e.getKeyCode();
+            if (keyHandler != null) {
+                keyHandler.accept(key);
+                return;
+            }
+
+            if (key == KeyEvent.VK_S) {
+                if (!inGame && !win) {
+                    newGame();
+                }
+            } else if (inGame) {
+                if (key == KeyEvent.VK_LEFT) {
+                    reqDX = -1;
+                    reqDY = 0;
+                } else if (key == KeyEvent.VK_RIGHT) {
+                    reqDX = 1;
+                    reqDY = 0;
+                } else if (key == KeyEvent.VK_UP) {
+                    reqDX = 0;
+                    reqDY = -1;
+                } else if (key == KeyEvent.VK_DOWN) {
+                    reqDX = 0;
+                    reqDY = 1;
+                } else if (key == KeyEvent.VK_A) {
+                    setAutopilot(autopilot == null);
+                } else if (key == KeyEvent.VK_ESCAPE && timer.isRunning()) {
+                    inGame = false;
+                    stopSounds();
+                }
+            }
+        }
+    }
+}
+
@@ -0,0 +1,257 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Gameplay event log.
+ *
+ * The game thread packs each event into one long and stores it in a preallocated
+ * single-producer/single-consumer ring, so logging is a couple of plain stores and an ordered
+ * write of the head counter. A background thread drains the ring into a binary file:
+ *
+ *   int magic, int version, int rows, int cols, rows*cols bytes of maze characters,
+ *   then one big-endian long per event (see pack()). A MAZE event is followed by the
+ *   new maze's characters, padded with zeros to a multiple of 8 bytes.
+ *
+ * If the writer cannot keep up the ring fills and new events are dropped and counted;
+ * the game thread never waits.
+ */
+class EventLog implements AutoCloseable {
+
+    // Event types
+    static final int DOT_EATEN = 1;
+    static final int PELLET_EATEN = 2;
+    static final int GHOST_EATEN = 3;      // arg = ghost index, position is where it was caught
+    static final int PACMAN_DEATH = 4;     // arg = ghost index that caught Pac-Man
+    static final int LEVEL_COMPLETE = 5;
+    static final int FRIGHTENED_START = 6;
+    static final int FRIGHTENED_END = 7;
+    static final int PACMAN_STEP = 8;      // Pac-Man's tile, once per tick
+    static final int MAZE = 9;             // A level began: x = columns, y = rows, then the maze
+
+    static final int MAGIC = 0x50414345;   // "PACE"
+    static final int VERSION = 1;
+
+    static final int MAX_SIDE = (1 << 12) - 1; // Rows and columns fit pack()'s 12-bit x and y
+
+    private static final int RING_BITS = 16;
+    private static final int MAZE_SLOTS = 4;           // MAZE events in the ring at once
+    private static final int WRITE_BUFFER = 64 * 1024;
+    private static final long IDLE_PARK_NANOS = 1_000_000;
+    private static final long FLUSH_INTERVAL_NANOS = 100_000_000;
+
+    private final long[] ring = new long[1 << RING_BITS];
+    private final int mask = ring.length - 1;
+    private final AtomicLong head = new AtomicLong(); // Next slot the game thread writes
+    private final AtomicLong tail = new AtomicLong(); // Next slot the writer reads
+    private long tailCache;                            // Producer's last look at tail
+    private long dropped;                              // Only touched by the producer
+    private byte[] pendingMaze;                        // Maze of a MAZE event that did not fit in the ring yet
+    private long pendingMazeEvent;
+    private boolean mazeTooLarge;                      // Events are dropped until a maze that fits
+    private final byte[][] mazes = new byte[MAZE_SLOTS][]; // Handed to the writer with MAZE events
+    private long mazesSent;                            // Only touched by the producer
+    private final AtomicLong mazesWritten = new AtomicLong();
+
+    private final FileChannel out;
+    private final Thread writer;
+    private volatile boolean closing;
+
+    private EventLog(Path file, String[] levelData) throws IOException {
+        checkSize(levelData);
+        out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                               StandardOpenOption.TRUNCATE_EXISTING);
+        int rows = levelData.length, cols = levelData[0].length();
+        ByteBuffer header = ByteBuffer.allocate(16 + rows * cols);
+        header.putInt(MAGIC).putInt(VERSION).putInt(rows).putInt(cols);
+        for (String row : levelData) {
+            for (int c = 0; c < cols; c++) {
+                header.put((byte) row.charAt(c));
+            }
+        }
+        header.flip();
+        while (header.hasRemaining()) {
+            out.write(header);
+        }
+
+        writer = new Thread(this::writeLoop, "event-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    static EventLog open(Path file, String[] levelData) throws IOException {
+        return new EventLog(file, levelData);
+    }
+
+    private static void checkSize(String[] levelData) throws IOException {
+        if (levelData.length > MAX_SIDE || levelData[0].length() > MAX_SIDE) {
+            throw new IOException("maze is " + levelData.length + "x" + levelData[0].length()
+                    + ", event logs only hold mazes up to " + MAX_SIDE + "x" + MAX_SIDE);
+        }
+    }
+
+    // Layout: tick (32 bits) | x (12) | y (12) | arg (4) | type (4)
+    static long pack(int type, int arg, long tick, int x, int y) {
+        return (tick << 32) | ((long) (x & 0xFFF) << 20) | ((y & 0xFFF) << 8) | ((arg & 0xF) << 4) | (type & 0xF);
+    }
+
+    static int type(long event) { return (int) (event & 0xF); }
+    static int arg(long event)  { return (int) ((event >>> 4) & 0xF); }
+    static int y(long event)    { return (int) ((event >>> 8) & 0xFFF); }
+    static int x(long event)    { return (int) ((event >>> 20) & 0xFFF); }
+    static long tick(long event) { return event >>> 32; }
+
+    /** Records one event. Must only be called from the game thread. */
+    void emit(int type, int arg, long tick, int x, int y) {
+        if (mazeTooLarge || (pendingMaze != null && !offerPendingMaze()) || !hasRoom()) {
+            dropped++;
+            return;
+        }
+        publish(pack(type, arg, tick, x, y));
+    }
+
+    /**
+     * A maze as written after its MAZE event: its characters, zero-padded to whole events.
+     * reuse is filled and returned instead of a new array when it has the right length.
+     */
+    static byte[] mazeRecord(String[] levelData, byte[] reuse) {
+        int rows = levelData.length, cols = levelData[0].length();
+        int length = (rows * cols + 7) & ~7;
+        byte[] maze = reuse != null && reuse.length == length ? reuse : new byte[length];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                maze[r * cols + c] = (byte) levelData[r].charAt(c);
+            }
+        }
+        Arrays.fill(maze, rows * cols, length, (byte) 0);
+        return maze;
+    }
+
+    /**
+     * Records that play moved to another maze; later positions refer to it. mazeRecord must
+     * come from mazeRecord(levelData) and is not copied, so it must not be refilled while the
+     * level is played. Game thread only.
+     */
+    void levelStarted(String[] levelData, byte[] mazeRecord, long tick) {
+        int rows = levelData.length, cols = levelData[0].length();
+        pendingMaze = null;
+        mazeTooLarge = rows > MAX_SIDE || cols > MAX_SIDE;
+        if (mazeTooLarge) {
+            return;
+        }
+        pendingMaze = mazeRecord;
+        pendingMazeEvent = pack(MAZE, 0, tick, cols, rows);
+        offerPendingMaze();
+    }
+
+    private boolean offerPendingMaze() {
+        if (mazesSent - mazesWritten.get() >= MAZE_SLOTS || !hasRoom()) {
+            return false;
+        }
+        mazes[(int) (mazesSent++ % MAZE_SLOTS)] = pendingMaze; // Published along with the event
+        pendingMaze = null;
+        publish(pendingMazeEvent);
+        return true;
+    }
+
+    private boolean hasRoom() {
+        long h = head.get();
+        if (h - tailCache >= ring.length) {
+            tailCache = tail.get();
+            return h - tailCache < ring.length;
+        }
+        return true;
+    }
+
+    private void publish(long event) {
+        long h = head.get();
+        ring[(int) h & mask] = event;
+        head.lazySet(h + 1); // Publishes the slot to the writer without a full fence
+    }
+
+    long droppedCount() {
+        return dropped;
+    }
+
+    /** Writes out everything logged so far and closes the file. */
+    @Override
+    public void close() {
+        closing = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        ByteBuffer buf = ByteBuffer.allocateDirect(WRITE_BUFFER);
+        long lastFlush = System.nanoTime();
+        try {
+            while (true) {
+                boolean done = closing; // Read before draining so nothing emitted before close() is missed
+                long t = tail.get();
+                long h = head.get();
+                while (t < h) {
+                    if (buf.remaining() < Long.BYTES) {
+                        flush(buf);
+                        lastFlush = System.nanoTime();
+                    }
+                    long event = ring[(int) t & mask];
+                    buf.putLong(event);
+                    t++;
+                    if (type(event) == MAZE) {
+                        long m = mazesWritten.get();
+                        writeMaze(buf, mazes[(int) (m % MAZE_SLOTS)]);
+                        mazesWritten.lazySet(m + 1);
+                    }
+                }
+                tail.lazySet(t);
+
+                if (buf.position() > 0 && (done || System.nanoTime() - lastFlush > FLUSH_INTERVAL_NANOS)) {
+                    flush(buf);
+                    lastFlush = System.nanoTime();
+                }
+                if (done) {
+                    break;
+                }
+                if (t == head.get()) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Event log: write failed, logging stopped: " + e);
+        } finally {
+            try {
+                out.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void writeMaze(ByteBuffer buf, byte[] maze) throws IOException {
+        int at = 0;
+        while (at < maze.length) {
+            if (!buf.hasRemaining()) {
+                flush(buf);
+            }
+            int n = Math.min(buf.remaining(), maze.length - at);
+            buf.put(maze, at, n);
+            at += n;
+        }
+    }
+
+    private void flush(ByteBuffer buf) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            out.write(buf);
+        }
+        buf.clear();
+    }
+}
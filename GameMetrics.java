@@ -0,0 +1,289 @@
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.remote.JMXConnectorServer;
+import javax.management.remote.JMXConnectorServerFactory;
+import javax.management.remote.JMXServiceURL;
+import javax.management.remote.rmi.RMIConnectorServer;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.server.RMIServerSocketFactory;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Live game metrics for JMX tools, registered on the platform MBean server as OBJECT_NAME.
+ *
+ * Each game being played gets a Session. Its counters are written only by the thread
+ * running the game, so updating one is a plain read, add and lazySet with no lock or CAS;
+ * JMX threads read whatever was last published and add up the sessions when asked. A
+ * session is closed when its game goes away, and its totals are carried over so the
+ * counters never go back. Frames are counted here rather than per session, since one window
+ * can show many games, and are written only by the event dispatch thread. A tick is GC-free
+ * if the collectors' counts are the same when it ends as when it started; the VM bumps them
+ * as each collection finishes, whereas collection notifications arrive later on another
+ * thread and would miss most pauses.
+ *
+ * jconsole and similar tools see the bean in the local process list. startConnector() also
+ * serves it over RMI on a loopback port, for dashboards that poll a JMX URL.
+ */
+class GameMetrics implements GameMetricsMBean {
+
+    static final String OBJECT_NAME = "PacMan:type=GameMetrics";
+
+    // Frame counters, written on the event dispatch thread
+    private static final int FRAMES = 0, FRAME_NANOS = 1, LAST_FRAME_NANOS = 2, DROPPED_FRAMES = 3;
+
+    private static GameMetrics instance;
+
+    private final List<Session> sessions = new CopyOnWriteArrayList<>();
+    private final long[] closedTotals = new long[Session.FIELDS]; // Guarded by this
+    private final AtomicLongArray frames = new AtomicLongArray(4);
+    private GarbageCollectorMXBean[] collectors = new GarbageCollectorMXBean[0]; // Set by register()
+    private final long startNanos = System.nanoTime();
+
+    /** Counters of one game, updated by the thread that runs it. */
+    static final class Session {
+        private static final int TICKS = 0, TICK_NANOS = 1, LAST_TICK_NANOS = 2, GC_FREE_TICKS = 3;
+        private static final int POINTS = 4, LEVEL = 5, INPUT_DEPTH = 6;
+        private static final int FIELDS = 7;
+        private static final int[] TOTALS = {TICKS, TICK_NANOS, GC_FREE_TICKS, POINTS}; // Kept after close()
+
+        private final GameMetrics owner;
+        private final AtomicLongArray values = new AtomicLongArray(FIELDS);
+
+        // Game thread only
+        private long tickStart, gcAtTickStart;
+        private int bestScore;  // Points are only counted above this, so re-run ticks don't count twice
+
+        private Session(GameMetrics owner) {
+            this.owner = owner;
+        }
+
+        void gameStarted() {
+            bestScore = 0;
+        }
+
+        void tickStarted() {
+            gcAtTickStart = owner.gcCount();
+            tickStart = System.nanoTime();
+        }
+
+        void tickEnded(int level, int score) {
+            long nanos = System.nanoTime() - tickStart;
+            add(values, TICKS, 1);
+            add(values, TICK_NANOS, nanos);
+            values.lazySet(LAST_TICK_NANOS, nanos);
+            if (owner.gcCount() == gcAtTickStart) {
+                add(values, GC_FREE_TICKS, 1);
+            }
+            if (score > bestScore) {
+                add(values, POINTS, score - bestScore);
+                bestScore = score;
+            }
+            values.lazySet(LEVEL, level);
+        }
+
+        void frameRendered(long nanos) {
+            owner.frameRendered(nanos);
+        }
+
+        void frameDropped() {
+            owner.frameDropped();
+        }
+
+        void setInputQueueDepth(int depth) {
+            values.lazySet(INPUT_DEPTH, depth);
+        }
+
+        /** Called by the game thread once the game is over for good. Safe to call more than once. */
+        void close() {
+            owner.closeSession(this);
+        }
+    }
+
+    private GameMetrics() {
+    }
+
+    /** The process's metrics, registered with JMX on first use. */
+    static synchronized GameMetrics get() {
+        if (instance == null) {
+            instance = new GameMetrics();
+            instance.register();
+        }
+        return instance;
+    }
+
+    private void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            System.err.println("JMX metrics disabled: " + e);
+        }
+        collectors = ManagementFactory.getGarbageCollectorMXBeans().toArray(new GarbageCollectorMXBean[0]);
+    }
+
+    // Collections finished so far, by all collectors. Reading it allocates nothing.
+    private long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : collectors) {
+            count += Math.max(gc.getCollectionCount(), 0); // -1 if a collector doesn't count
+        }
+        return count;
+    }
+
+    Session newSession() {
+        Session session = new Session(this);
+        sessions.add(session);
+        return session;
+    }
+
+    private synchronized void closeSession(Session session) {
+        if (sessions.remove(session)) {
+            for (int field : Session.TOTALS) {
+                closedTotals[field] += session.values.get(field);
+            }
+        }
+    }
+
+    void frameRendered(long nanos) {
+        add(frames, FRAMES, 1);
+        add(frames, FRAME_NANOS, nanos);
+        frames.lazySet(LAST_FRAME_NANOS, nanos);
+    }
+
+    void frameDropped() {
+        add(frames, DROPPED_FRAMES, 1);
+    }
+
+    // Single writer: no need for an atomic add
+    private static void add(AtomicLongArray values, int i, long delta) {
+        values.lazySet(i, values.get(i) + delta);
+    }
+
+    /**
+     * Serves the platform MBean server, with these metrics, at
+     * service:jmx:rmi:///jndi/rmi://localhost:PORT/jmxrmi. Only accepts local connections.
+     */
+    static JMXConnectorServer startConnector(int port) throws IOException {
+        RMIServerSocketFactory loopback = new LoopbackSocketFactory();
+        LocateRegistry.createRegistry(port, null, loopback);
+        Map<String, Object> env = new HashMap<>();
+        env.put(RMIConnectorServer.RMI_SERVER_SOCKET_FACTORY_ATTRIBUTE, loopback);
+        JMXServiceURL url = new JMXServiceURL("service:jmx:rmi://localhost:" + port
+                + "/jndi/rmi://localhost:" + port + "/jmxrmi");
+        JMXConnectorServer server = JMXConnectorServerFactory.newJMXConnectorServer(
+                url, env, ManagementFactory.getPlatformMBeanServer());
+        server.start();
+        return server;
+    }
+
+    // The registry and the connector share the port, which RMI allows when their factories are equal
+    private static final class LoopbackSocketFactory implements RMIServerSocketFactory {
+        @Override
+        public ServerSocket createServerSocket(int port) throws IOException {
+            return new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof LoopbackSocketFactory;
+        }
+
+        @Override
+        public int hashCode() {
+            return LoopbackSocketFactory.class.hashCode();
+        }
+    }
+
+    // Locked so that a session closing meanwhile is counted exactly once
+    private synchronized long sum(int field) {
+        long total = closedTotals[field];
+        for (Session s : sessions) {
+            total += s.values.get(field);
+        }
+        return total;
+    }
+
+    @Override
+    public int getActiveSessions() {
+        return sessions.size();
+    }
+
+    @Override
+    public long getTicksProcessed() {
+        return sum(Session.TICKS);
+    }
+
+    @Override
+    public double getCurrentTickMicros() {
+        long slowest = 0;
+        for (Session s : sessions) {
+            slowest = Math.max(slowest, s.values.get(Session.LAST_TICK_NANOS));
+        }
+        return slowest / 1e3;
+    }
+
+    @Override
+    public double getAverageTickMicros() {
+        long ticks = sum(Session.TICKS);
+        return ticks == 0 ? 0 : sum(Session.TICK_NANOS) / 1e3 / ticks;
+    }
+
+    @Override
+    public double getGcFreeTickRatio() {
+        long ticks = sum(Session.TICKS);
+        return ticks == 0 ? 1 : (double) sum(Session.GC_FREE_TICKS) / ticks;
+    }
+
+    @Override
+    public long getFramesRendered() {
+        return frames.get(FRAMES);
+    }
+
+    @Override
+    public double getCurrentFrameMicros() {
+        return frames.get(LAST_FRAME_NANOS) / 1e3;
+    }
+
+    @Override
+    public double getAverageFrameMicros() {
+        long n = frames.get(FRAMES);
+        return n == 0 ? 0 : frames.get(FRAME_NANOS) / 1e3 / n;
+    }
+
+    @Override
+    public long getDroppedFrames() {
+        return frames.get(DROPPED_FRAMES);
+    }
+
+    @Override
+    public int getCurrentLevel() {
+        long level = 0;
+        for (Session s : sessions) {
+            level = Math.max(level, s.values.get(Session.LEVEL));
+        }
+        return (int) level;
+    }
+
+    @Override
+    public long getPointsScored() {
+        return sum(Session.POINTS);
+    }
+
+    @Override
+    public double getScorePerSecond() {
+        return sum(Session.POINTS) * 1e9 / (System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public int getInputQueueDepth() {
+        return (int) sum(Session.INPUT_DEPTH);
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ * Management interface of GameMetrics, as seen by JMX clients under GameMetrics.OBJECT_NAME.
+ * Times are in microseconds; totals count from when the process started.
+ */
+public interface GameMetricsMBean {
+
+    /**
+     * Games currently being played: one in normal play and versus, one per cell of the mosaic.
+     * A versus match stops counting once it is over.
+     */
+    int getActiveSessions();
+
+    /** Ticks run by all sessions, including ticks re-run after a versus rollback. */
+    long getTicksProcessed();
+
+    /** The slowest session's most recent tick. */
+    double getCurrentTickMicros();
+
+    double getAverageTickMicros();
+
+    /** Share of ticks during which no garbage collection finished, 0 to 1. */
+    double getGcFreeTickRatio();
+
+    long getFramesRendered();
+
+    double getCurrentFrameMicros();
+
+    double getAverageFrameMicros();
+
+    /** Game updates that were never shown because the previous frame had not been painted yet. */
+    long getDroppedFrames();
+
+    /** Highest level any session is on. */
+    int getCurrentLevel();
+
+    /** Points scored by all sessions. */
+    long getPointsScored();
+
+    /** Points scored by all sessions per second since the process started. */
+    double getScorePerSecond();
+
+    /** Inputs received from versus opponents that the game has not reached yet. */
+    int getInputQueueDepth();
+}
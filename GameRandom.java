@@ -0,0 +1,43 @@
+import java.util.Random;
+
+/**
+ * java.util.Random with its state exposed, so a game can be saved and restored exactly.
+ *
+ * Uses the same generator and seed scrambling as java.util.Random, so a seed gives the same
+ * numbers as before and seeds saved with high scores still replay. Not thread-safe, which
+ * the game thread doesn't need.
+ */
+class GameRandom extends Random {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+
+    private long state;
+
+    GameRandom() {
+        super(0); // Random's constructor calls setSeed(), which sets state
+    }
+
+    @Override
+    public synchronized void setSeed(long seed) {
+        state = (seed ^ MULTIPLIER) & MASK;
+        super.setSeed(seed); // Also clears Random's cached nextGaussian
+    }
+
+    @Override
+    protected int next(int bits) {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        return (int) (state >>> (48 - bits));
+    }
+
+    long getState() {
+        return state;
+    }
+
+    void setState(long state) {
+        this.state = state & MASK;
+    }
+}
@@ -0,0 +1,108 @@
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Ghost personalities: the tile each ghost heads for when it is not frightened.
+ *
+ * A ghost at a junction takes the move that brings it closest to its target. Which target that
+ * is depends on its personality, and on the scatter/chase schedule: in scatter phases every
+ * ghost heads for its own corner instead, which breaks up the pack now and then.
+ *
+ * Personalities are plain int codes, one per ghost, and targets() works out all of them in one
+ * loop over the ghost arrays, so Board and the autopilot's model of it share the exact rules and
+ * adding ghosts or personalities costs a few array reads, not a call or an object per ghost.
+ */
+class GhostTargeting {
+
+    static final int CHASE = 0;  // Blinky: straight for Pac-Man. Scatters to the top right
+    static final int AMBUSH = 1; // Pinky: four tiles ahead of Pac-Man. Top left
+    static final int FLANK = 2;  // Inky: the tile two ahead of Pac-Man, doubled away from the first chaser. Bottom right
+    static final int SHY = 3;    // Clyde: Pac-Man while more than eight tiles away, otherwise his corner. Bottom left
+
+    static final String[] NAMES = {"blinky", "pinky", "inky", "clyde"};
+
+    private static final int AHEAD = 4;
+    private static final int FLANK_AHEAD = 2;
+    private static final int SHY_DISTANCE = 8;
+
+    // Ticks at which the phase flips, starting in scatter; chase for good after the last one.
+    // At the base 150 ms tick: 7 s scatter, 20 s chase, 7, 20, 5, 20, 5, then chase.
+    private static final int[] PHASE_ENDS = {47, 180, 227, 360, 393, 527, 560};
+
+    private GhostTargeting() {
+    }
+
+    static int[] defaults(int nGhosts) {
+        int[] targeting = new int[nGhosts];
+        for (int i = 0; i < nGhosts; i++) {
+            targeting[i] = i % NAMES.length;
+        }
+        return targeting;
+    }
+
+    // Parses a comma-separated list of ghost names, e.g. "blinky,pinky,pinky,clyde"
+    static int[] parse(String list) {
+        String[] names = list.split(",");
+        int[] targeting = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            targeting[i] = Arrays.asList(NAMES).indexOf(names[i].trim().toLowerCase(Locale.ROOT));
+            if (targeting[i] < 0) {
+                throw new IllegalArgumentException("Unknown ghost '" + names[i] + "', expected one of "
+                        + String.join(", ", NAMES));
+            }
+        }
+        return targeting;
+    }
+
+    // phaseTicks counts the ticks played without frightened ghosts since the level or life began
+    static boolean isScatter(int phaseTicks) {
+        int phase = 0;
+        while (phase < PHASE_ENDS.length && phaseTicks >= PHASE_ENDS[phase]) {
+            phase++;
+        }
+        return (phase & 1) == 0;
+    }
+
+    /**
+     * Fills targetX/targetY for the first n ghosts from their positions before anyone moves.
+     * Targets may lie outside the maze; only the distance to them matters.
+     */
+    static void targets(int[] targeting, int n, int[] ghostX, int[] ghostY,
+                        int pacmanX, int pacmanY, int pacmanDX, int pacmanDY,
+                        int rows, int cols, boolean scatter, int[] targetX, int[] targetY) {
+        // FLANK works off the first CHASE ghost, or ghost 0 if there is none
+        int anchor = 0;
+        for (int i = 0; i < n; i++) {
+            if (targeting[i] == CHASE) {
+                anchor = i;
+                break;
+            }
+        }
+
+        for (int i = 0; i < n; i++) {
+            int kind = targeting[i];
+            int x, y;
+            if (scatter) {
+                x = kind == AMBUSH || kind == SHY ? 0 : cols - 1;
+                y = kind == CHASE || kind == AMBUSH ? 0 : rows - 1;
+            } else if (kind == AMBUSH) {
+                x = pacmanX + AHEAD * pacmanDX;
+                y = pacmanY + AHEAD * pacmanDY;
+            } else if (kind == FLANK) {
+                x = 2 * (pacmanX + FLANK_AHEAD * pacmanDX) - ghostX[anchor];
+                y = 2 * (pacmanY + FLANK_AHEAD * pacmanDY) - ghostY[anchor];
+            } else if (kind == SHY) {
+                int dx = pacmanX - ghostX[i];
+                int dy = pacmanY - ghostY[i];
+                boolean far = dx * dx + dy * dy > SHY_DISTANCE * SHY_DISTANCE;
+                x = far ? pacmanX : 0;
+                y = far ? pacmanY : rows - 1;
+            } else {
+                x = pacmanX;
+                y = pacmanY;
+            }
+            targetX[i] = x;
+            targetY[i] = y;
+        }
+    }
+}
@@ -0,0 +1,294 @@
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Offline analytics over a directory of EventLog files.
+ *
+ * Files are memory-mapped in fixed-size windows and scanned in parallel, one file per task,
+ * so only the per-tile counters are ever on the heap. Results are grouped by maze and written
+ * as PNG heatmaps drawn over the game's own maze tiles:
+ *
+ *   occupancy - ticks Pac-Man spent on each tile
+ *   deaths    - where Pac-Man was caught
+ *   catches   - where Pac-Man caught frightened ghosts
+ *   dot-time  - average ticks it took to reach each dot since the previous one
+ *
+ * Usage: java HeatmapTool <events dir> [output dir]
+ */
+class HeatmapTool {
+
+    private static final int TILE_SIZE = 20;
+    private static final int LEGEND_HEIGHT = 40;
+    private static final long MAP_WINDOW = 256L << 20; // Bytes mapped at a time; a multiple of 8
+    private static final int HEADER_SIZE = 16;
+
+    // Per-tile counters for one maze, from one file or merged from many
+    static final class Heatmap {
+        final String key;
+        final int rows, cols;
+        final byte[] maze;
+        final long[] occupancy, deaths, catches, dotTicks, dotCount;
+        long files, events;
+
+        Heatmap(int rows, int cols, byte[] maze) {
+            this.rows = rows;
+            this.cols = cols;
+            this.maze = maze;
+            this.key = key(rows, cols, maze);
+            int n = rows * cols;
+            occupancy = new long[n];
+            deaths = new long[n];
+            catches = new long[n];
+            dotTicks = new long[n];
+            dotCount = new long[n];
+        }
+
+        static String key(int rows, int cols, byte[] maze) {
+            return rows + "x" + cols + ":" + new String(maze, StandardCharsets.ISO_8859_1);
+        }
+
+        Heatmap merge(Heatmap o) {
+            for (int i = 0; i < occupancy.length; i++) {
+                occupancy[i] += o.occupancy[i];
+                deaths[i] += o.deaths[i];
+                catches[i] += o.catches[i];
+                dotTicks[i] += o.dotTicks[i];
+                dotCount[i] += o.dotCount[i];
+            }
+            files += o.files;
+            events += o.events;
+            return this;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java HeatmapTool <events dir> [output dir]");
+            System.exit(2);
+        }
+        Path in = Paths.get(args[0]);
+        Path out = Paths.get(args.length > 1 ? args[1] : "heatmaps");
+        Files.createDirectories(out);
+
+        long start = System.nanoTime();
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(in)) {
+            files = walk.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        Map<String, Heatmap> byMaze = aggregate(files);
+
+        int index = 0;
+        for (Heatmap h : byMaze.values()) {
+            String prefix = "maze" + index++;
+            writeImage(h, h.occupancy, null, "occupancy (ticks)", out.resolve(prefix + "-occupancy.png"));
+            writeImage(h, h.deaths, null, "deaths", out.resolve(prefix + "-deaths.png"));
+            writeImage(h, h.catches, null, "ghosts caught", out.resolve(prefix + "-catches.png"));
+            writeImage(h, h.dotTicks, h.dotCount, "avg ticks per dot", out.resolve(prefix + "-dot-time.png"));
+            System.out.printf("%s: %dx%d maze, %d files, %d events%n", prefix, h.rows, h.cols, h.files, h.events);
+        }
+        System.out.printf("Scanned %d files in %.1f s%n", files.size(), (System.nanoTime() - start) / 1e9);
+    }
+
+    static Map<String, Heatmap> aggregate(List<Path> files) {
+        return files.parallelStream()
+                .flatMap(file -> scan(file).stream())
+                .collect(Collectors.toMap(h -> h.key, h -> h, Heatmap::merge));
+    }
+
+    // One heatmap per maze played in the file; empty for files that are not event logs
+    static Collection<Heatmap> scan(Path file) {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < HEADER_SIZE) {
+                return Collections.emptyList();
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(ch, header, 0); // Read, not mapped: only event windows are worth a mapping
+            header.flip();
+            if (header.getInt() != EventLog.MAGIC) {
+                return Collections.emptyList();
+            }
+            int version = header.getInt();
+            if (version != EventLog.VERSION) {
+                System.err.println(file + ": skipped, event log version " + version
+                        + " but this tool reads version " + EventLog.VERSION);
+                return Collections.emptyList();
+            }
+            int rows = header.getInt(), cols = header.getInt();
+            long eventsStart = HEADER_SIZE + (long) rows * cols;
+            if (rows <= 0 || cols <= 0 || eventsStart > size) {
+                return Collections.emptyList();
+            }
+
+            Map<String, Heatmap> byMaze = new HashMap<>();
+            Heatmap h = mazeAt(ch, HEADER_SIZE, rows, cols, byMaze);
+            long lastDotTick = -1;
+            long pos = eventsStart;
+            long end = eventsStart + (size - eventsStart) / Long.BYTES * Long.BYTES;
+            while (pos < end) {
+                long len = Math.min(MAP_WINDOW, end - pos);
+                MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, pos, len);
+                long next = pos + len;
+                while (buf.remaining() >= Long.BYTES) {
+                    long e = buf.getLong();
+                    int x = EventLog.x(e), y = EventLog.y(e);
+                    if (EventLog.type(e) == EventLog.MAZE) {
+                        // The new maze follows the event, padded to keep events 8-byte aligned
+                        long at = pos + buf.position();
+                        long padded = ((long) x * y + 7) & ~7L;
+                        if (x == 0 || y == 0 || at + padded > end) {
+                            next = end;
+                            break;
+                        }
+                        rows = y;
+                        cols = x;
+                        h = mazeAt(ch, at, rows, cols, byMaze);
+                        if (padded > buf.remaining()) {
+                            next = at + padded; // Runs past this window: map the next one after it
+                            break;
+                        }
+                        buf.position(buf.position() + (int) padded);
+                        continue;
+                    }
+                    if (x >= cols || y >= rows) {
+                        continue;
+                    }
+                    int tile = y * cols + x;
+                    long tick = EventLog.tick(e);
+                    switch (EventLog.type(e)) {
+                        case EventLog.PACMAN_STEP:
+                            h.occupancy[tile]++;
+                            break;
+                        case EventLog.PACMAN_DEATH:
+                            h.deaths[tile]++;
+                            break;
+                        case EventLog.GHOST_EATEN:
+                            h.catches[tile]++;
+                            break;
+                        case EventLog.DOT_EATEN:
+                        case EventLog.PELLET_EATEN:
+                            // Ticks restart at 0 when a new game starts in the same file
+                            if (lastDotTick >= 0 && tick >= lastDotTick) {
+                                h.dotTicks[tile] += tick - lastDotTick;
+                                h.dotCount[tile]++;
+                            }
+                            lastDotTick = tick;
+                            break;
+                        case EventLog.LEVEL_COMPLETE:
+                            lastDotTick = tick;
+                            break;
+                        default:
+                            break;
+                    }
+                    h.events++;
+                }
+                pos = next;
+            }
+            return byMaze.values();
+        } catch (IOException e) {
+            throw new UncheckedIOException(file.toString(), e);
+        }
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer dst, long offset) throws IOException {
+        int start = dst.position();
+        while (dst.hasRemaining()) {
+            if (ch.read(dst, offset + dst.position() - start) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    // The file's heatmap for the maze stored at the given offset
+    private static Heatmap mazeAt(FileChannel ch, long offset, int rows, int cols,
+                                  Map<String, Heatmap> byMaze) throws IOException {
+        byte[] maze = new byte[rows * cols];
+        readFully(ch, ByteBuffer.wrap(maze), offset);
+        Heatmap h = byMaze.get(Heatmap.key(rows, cols, maze));
+        if (h == null) {
+            h = new Heatmap(rows, cols, maze);
+            h.files = 1;
+            byMaze.put(h.key, h);
+        }
+        return h;
+    }
+
+    // Draws the maze walls with Board's tiles, then one translucent heat square per tile.
+    // With a divisor the tile value is values[i] / divisor[i]; colours are on a log scale.
+    static void writeImage(Heatmap h, long[] values, long[] divisor, String title, Path file) throws IOException {
+        int n = values.length;
+        double[] v = new double[n];
+        double max = 0;
+        for (int i = 0; i < n; i++) {
+            if (divisor == null) {
+                v[i] = values[i];
+            } else if (divisor[i] > 0) {
+                v[i] = (double) values[i] / divisor[i];
+            }
+            max = Math.max(max, v[i]);
+        }
+
+        BufferedImage img = new BufferedImage(h.cols * TILE_SIZE, h.rows * TILE_SIZE + LEGEND_HEIGHT,
+                                              BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = img.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        short[][] walls = new short[h.rows][h.cols];
+        for (int r = 0; r < h.rows; r++) {
+            for (int c = 0; c < h.cols; c++) {
+                walls[r][c] = (short) (h.maze[r * h.cols + c] == '1' ? 1 : 16);
+            }
+        }
+        Board.drawMazeTiles(g2d, walls, TILE_SIZE, 0);
+
+        double logMax = Math.log1p(max);
+        for (int i = 0; i < n; i++) {
+            if (v[i] <= 0) {
+                continue;
+            }
+            g2d.setColor(heat(Math.log1p(v[i]) / logMax));
+            g2d.fillRect((i % h.cols) * TILE_SIZE + 1, (i / h.cols) * TILE_SIZE + 1, TILE_SIZE - 2, TILE_SIZE - 2);
+        }
+
+        int legendY = h.rows * TILE_SIZE;
+        for (int x = 0; x < img.getWidth(); x++) {
+            g2d.setColor(heat((double) x / img.getWidth()));
+            g2d.drawLine(x, legendY + 4, x, legendY + 12);
+        }
+        g2d.setColor(Color.WHITE);
+        g2d.setFont(new Font("Arial", Font.BOLD, 12));
+        g2d.drawString(String.format("%s, max %.1f, %d files", title, max, h.files), 4, legendY + 30);
+        g2d.dispose();
+
+        ImageIO.write(img, "png", file.toFile());
+    }
+
+    // Dark red through orange to yellow-white, translucent at the low end
+    private static Color heat(double t) {
+        t = Math.max(0, Math.min(1, t));
+        int r = 255;
+        int g = (int) (255 * Math.min(1, t * 1.5));
+        int b = (int) (255 * Math.max(0, t - 0.7) / 0.3);
+        int a = (int) (90 + 150 * t);
+        return new Color(r, g, b, a);
+    }
+}
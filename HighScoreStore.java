@@ -0,0 +1,339 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Durable local high-score table.
+ *
+ * Every finished game is appended as a fixed-size, checksummed record to scores.log by a
+ * background writer thread, which fsyncs in batches. The best TOP_K runs are kept in memory
+ * and published as an immutable snapshot, so reading the leaderboard is a single volatile
+ * read. Every so often the writer also saves the table and the log offset it covers to
+ * scores.idx, so opening the store only has to replay the log written since then.
+ *
+ * record() never blocks: if the writer falls far behind, new scores are dropped and counted.
+ * Only one store may have a directory open at a time; it holds a lock on scores.log until
+ * it is closed, and opening a locked directory fails.
+ */
+class HighScoreStore implements AutoCloseable {
+
+    static final int TOP_K = 100;
+
+    private static final int RECORD_SIZE = 4 + 4 + 8 + 8 + 8 + 4; // score, level, ticks, seed, time, crc
+    private static final int INDEX_MAGIC = 0x50414353;             // "PACS"
+    private static final int QUEUE_CAPACITY = 8192;
+    private static final int SYNC_BATCH = 256;                     // Records per fsync at most
+    private static final long SYNC_INTERVAL_MS = 200;              // Longest a record waits for fsync
+    private static final int COMPACT_EVERY = 4096;                 // Records between index rewrites
+
+    /** One finished game. */
+    static final class Entry {
+        final int score;
+        final int level;      // Level reached
+        final long runTicks;  // Game ticks the run lasted
+        final long seed;      // Seed of the run's Random, to replay it
+        final long timestamp; // Epoch millis when the game ended
+
+        Entry(int score, int level, long runTicks, long seed, long timestamp) {
+            this.score = score;
+            this.level = level;
+            this.runTicks = runTicks;
+            this.seed = seed;
+            this.timestamp = timestamp;
+        }
+    }
+
+    private final Path logPath;
+    private final Path indexPath;
+    private final FileChannel log;
+    private final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writer;
+    private volatile boolean closing;
+
+    // Owned by the writer thread after construction
+    private final Entry[] top = new Entry[TOP_K];
+    private int topSize;
+    private long logEnd;
+    private long sinceIndex;
+
+    private volatile List<Entry> snapshot = Collections.emptyList();
+
+    private HighScoreStore(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        logPath = dir.resolve("scores.log");
+        indexPath = dir.resolve("scores.idx");
+        log = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                               StandardOpenOption.WRITE);
+        try {
+            lock(log, logPath);
+            long replayFrom = loadIndex();
+            replayLog(replayFrom);
+            publish();
+            if (sinceIndex > 0) {
+                writeIndex();
+            }
+        } catch (IOException | RuntimeException e) {
+            log.close(); // Also releases the lock
+            throw e;
+        }
+
+        writer = new Thread(this::writeLoop, "high-score-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    static HighScoreStore open(Path dir) throws IOException {
+        return new HighScoreStore(dir);
+    }
+
+    // Another writer would append at its own logEnd and overwrite our records, so refuse to share.
+    // The lock is released when the channel is closed.
+    private static void lock(FileChannel log, Path logPath) throws IOException {
+        FileLock lock;
+        try {
+            lock = log.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null; // Held by another store in this JVM
+        }
+        if (lock == null) {
+            throw new IOException(logPath + " is in use by another game");
+        }
+    }
+
+    /** Queues a finished game. Safe to call from any thread; never blocks. */
+    boolean record(int score, int level, long runTicks, long seed) {
+        Entry e = new Entry(score, level, runTicks, seed, System.currentTimeMillis());
+        if (closing || !queue.offer(e)) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /** Best runs, highest score first. The list is immutable and replaced as scores arrive. */
+    List<Entry> top() {
+        return snapshot;
+    }
+
+    int best() {
+        List<Entry> s = snapshot;
+        return s.isEmpty() ? 0 : s.get(0).score;
+    }
+
+    long droppedCount() {
+        return dropped.get();
+    }
+
+    /** Flushes everything queued so far, fsyncs and rewrites the index. */
+    @Override
+    public void close() {
+        closing = true; // The writer notices within SYNC_INTERVAL_MS; interrupting it would close the channel
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>(SYNC_BATCH);
+        ByteBuffer buf = ByteBuffer.allocate(RECORD_SIZE * SYNC_BATCH);
+        CRC32 crc = new CRC32();
+        long lastSync = System.currentTimeMillis();
+        int unsynced = 0;
+        try {
+            while (!closing || !queue.isEmpty()) {
+                Entry first;
+                try {
+                    first = queue.poll(SYNC_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    closing = true;
+                    continue;
+                }
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, SYNC_BATCH - 1);
+
+                    buf.clear();
+                    for (Entry e : batch) {
+                        putRecord(buf, e, crc);
+                        insert(e);
+                    }
+                    buf.flip();
+                    while (buf.hasRemaining()) {
+                        logEnd += log.write(buf, logEnd);
+                    }
+                    unsynced += batch.size();
+                    sinceIndex += batch.size();
+                    batch.clear();
+                    publish();
+                }
+
+                long now = System.currentTimeMillis();
+                if (unsynced > 0 && (unsynced >= SYNC_BATCH || now - lastSync >= SYNC_INTERVAL_MS || closing)) {
+                    log.force(false);
+                    unsynced = 0;
+                    lastSync = now;
+                }
+                if (sinceIndex >= COMPACT_EVERY) {
+                    writeIndex();
+                }
+            }
+            log.force(false);
+            writeIndex();
+        } catch (IOException e) {
+            System.err.println("High scores: write failed, further scores will not be saved: " + e);
+            closing = true;
+        } finally {
+            try {
+                log.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    // Keeps top[] sorted by score, highest first; ties keep the earlier run ahead
+    private void insert(Entry e) {
+        if (topSize == TOP_K && e.score <= top[TOP_K - 1].score) {
+            return;
+        }
+        int i = topSize < TOP_K ? topSize++ : TOP_K - 1;
+        while (i > 0 && top[i - 1].score < e.score) {
+            top[i] = top[i - 1];
+            i--;
+        }
+        top[i] = e;
+    }
+
+    private void publish() {
+        snapshot = Collections.unmodifiableList(Arrays.asList(Arrays.copyOf(top, topSize)));
+    }
+
+    private static void putRecord(ByteBuffer buf, Entry e, CRC32 crc) {
+        int start = buf.position();
+        buf.putInt(e.score).putInt(e.level).putLong(e.runTicks).putLong(e.seed).putLong(e.timestamp);
+        crc.reset();
+        crc.update(buf.array(), start, RECORD_SIZE - 4);
+        buf.putInt((int) crc.getValue());
+    }
+
+    // Reads the saved table; returns the log offset it covers, or 0 if there is no usable index
+    private long loadIndex() {
+        if (!Files.exists(indexPath)) {
+            return 0;
+        }
+        try {
+            ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(indexPath));
+            if (buf.remaining() < 20 || buf.getInt() != INDEX_MAGIC) {
+                return 0;
+            }
+            long covered = buf.getLong();
+            int count = buf.getInt();
+            if (count < 0 || count > TOP_K || buf.remaining() != count * RECORD_SIZE + 4
+                    || covered > log.size() || covered % RECORD_SIZE != 0) {
+                return 0;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buf.array(), 0, buf.limit() - 4);
+            if (buf.getInt(buf.limit() - 4) != (int) crc.getValue()) {
+                return 0;
+            }
+            for (int i = 0; i < count; i++) {
+                Entry e = readEntry(buf);
+                buf.getInt(); // Per-record crc is covered by the file crc
+                insert(e);
+            }
+            return covered;
+        } catch (IOException e) {
+            topSize = 0;
+            return 0;
+        }
+    }
+
+    // Replays records after the index; a torn or corrupt tail from a crash is cut off
+    private void replayLog(long from) throws IOException {
+        long size = log.size();
+        ByteBuffer buf = ByteBuffer.allocate(RECORD_SIZE * 1024);
+        CRC32 crc = new CRC32();
+        long pos = from;
+        boolean corrupt = false;
+        while (pos < size && !corrupt) {
+            buf.clear();
+            int n = log.read(buf, pos);
+            if (n <= 0) {
+                break;
+            }
+            buf.flip();
+            while (buf.remaining() >= RECORD_SIZE) {
+                int start = buf.position();
+                crc.reset();
+                crc.update(buf.array(), start, RECORD_SIZE - 4);
+                Entry e = readEntry(buf);
+                if (buf.getInt() != (int) crc.getValue()) {
+                    corrupt = true;
+                    break;
+                }
+                insert(e);
+                pos += RECORD_SIZE;
+                sinceIndex++;
+            }
+            if (n < RECORD_SIZE) {
+                break;
+            }
+        }
+        if (pos < size) {
+            log.truncate(pos);
+        }
+        logEnd = pos;
+    }
+
+    private static Entry readEntry(ByteBuffer buf) {
+        int score = buf.getInt();
+        int level = buf.getInt();
+        long runTicks = buf.getLong();
+        long seed = buf.getLong();
+        long timestamp = buf.getLong();
+        return new Entry(score, level, runTicks, seed, timestamp);
+    }
+
+    // Writes to a temp file and renames it over the old index, so a crash leaves one or the other
+    private void writeIndex() throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(16 + topSize * RECORD_SIZE + 4);
+        buf.putInt(INDEX_MAGIC).putLong(logEnd).putInt(topSize);
+        CRC32 crc = new CRC32();
+        for (int i = 0; i < topSize; i++) {
+            putRecord(buf, top[i], crc);
+        }
+        crc.reset();
+        crc.update(buf.array(), 0, buf.position());
+        buf.putInt((int) crc.getValue());
+
+        Path tmp = indexPath.resolveSibling("scores.idx.tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                StandardOpenOption.TRUNCATE_EXISTING)) {
+            buf.flip();
+            while (buf.hasRemaining()) {
+                out.write(buf);
+            }
+            out.force(true);
+        }
+        Files.move(tmp, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        sinceIndex = 0;
+    }
+}
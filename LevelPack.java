@@ -0,0 +1,243 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A sequence of mazes with per-level settings, loaded from a text file:
+ *
+ *   # comment
+ *   [level]
+ *   speed=140        optional, ms per tick; default 150 minus 10 per level, at least 50
+ *   frightened=80    optional, ticks ghosts stay frightened; default 100
+ *   1111111111111111111
+ *   1200000001000000021
+ *   ...
+ *
+ * Maze rows use the same characters as Board.levelDataString. Levels past the end of the
+ * pack replay the last maze, 10 ms faster per extra level.
+ *
+ * Loading only splits the file into sections. Turning a section into playable buffers is
+ * done by compileInto(), which Board runs on a background thread while the previous level
+ * is being played.
+ */
+class LevelPack {
+
+    static final int DEFAULT_FRIGHTENED = 100;
+    private static final int BASE_SPEED = 150;
+    private static final int SPEED_STEP = 10;
+    private static final int MIN_SPEED = 50;
+
+    private final List<List<String>> sections;
+    private final int maxDots; // Most dots and pellets in any one level
+
+    /** Playable buffers for one level. Reused from level to level when the size allows. */
+    static final class Level {
+        int number;
+        String[] levelData;
+        int rows, cols;
+        short[][] screenData;   // 0=dot, 1=wall, 2=power pellet, 16=empty, as in Board
+        int dotsLeft;
+        int pacmanX, pacmanY;
+        int[] ghostX, ghostY;   // Spawn tiles in 'G' order
+        int ghostCount;
+        int speed;              // Timer delay in ms
+        int frightenedDuration; // Ticks
+        byte[] mazeRecord;      // The maze as EventLog writes it, so a level start copies nothing
+    }
+
+    private LevelPack(List<List<String>> sections) {
+        if (sections.isEmpty()) {
+            throw new IllegalArgumentException("Level pack has no levels");
+        }
+        this.sections = sections;
+        int most = 0;
+        for (List<String> section : sections) {
+            int dots = 0;
+            for (String line : section) {
+                for (int i = 0; line.indexOf('=') < 0 && i < line.length(); i++) {
+                    if (line.charAt(i) == '0' || line.charAt(i) == '2') {
+                        dots++;
+                    }
+                }
+            }
+            most = Math.max(most, dots);
+        }
+        maxDots = most;
+    }
+
+    static LevelPack load(Path file) throws IOException {
+        return parse(Files.readAllLines(file, StandardCharsets.UTF_8), file.toString());
+    }
+
+    // The same format as a file, e.g. from toText(); source names it in error messages
+    static LevelPack parse(List<String> lines, String source) throws IOException {
+        List<List<String>> sections = new ArrayList<>();
+        List<String> current = null;
+        int lineNo = 0;
+        for (String line : lines) {
+            lineNo++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            if (line.equals("[level]")) {
+                current = new ArrayList<>();
+                sections.add(current);
+            } else if (current == null) {
+                throw new IOException(source + ":" + lineNo + ": expected [level]");
+            } else {
+                current.add(line);
+            }
+        }
+        if (sections.isEmpty()) {
+            throw new IOException(source + ": no levels");
+        }
+        LevelPack pack = new LevelPack(sections);
+        Level check = new Level();
+        for (int i = 1; i <= sections.size(); i++) {
+            try {
+                pack.compileInto(i, check, 0); // Parse every level once up front to report errors early
+            } catch (IllegalArgumentException e) {
+                throw new IOException(source + ": level " + i + ": " + e.getMessage());
+            }
+        }
+        return pack;
+    }
+
+    // The pack in the file format, so it can be stored alongside recorded games
+    String toText() {
+        StringBuilder sb = new StringBuilder();
+        for (List<String> section : sections) {
+            sb.append("[level]\n");
+            for (String line : section) {
+                sb.append(line).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    // A pack holding just one maze with default settings
+    static LevelPack single(String[] levelData) {
+        List<String> section = new ArrayList<>();
+        for (String row : levelData) {
+            section.add(row);
+        }
+        List<List<String>> sections = new ArrayList<>();
+        sections.add(section);
+        return new LevelPack(sections);
+    }
+
+    int size() {
+        return sections.size();
+    }
+
+    /** Upper bound on Level.dotsLeft for every level, so per-dot buffers can be sized once. */
+    int maxDots() {
+        return maxDots;
+    }
+
+    /**
+     * Fills out with level number (1-based). Arrays already in out are reused when the maze
+     * size matches, so compiling into a spare Level allocates nothing for same-size mazes.
+     */
+    void compileInto(int number, Level out, int nGhosts) {
+        List<String> section = sections.get(Math.min(number, sections.size()) - 1);
+        int speed = -1;
+        int frightened = DEFAULT_FRIGHTENED;
+        List<String> rowsList = new ArrayList<>(section.size());
+        for (String line : section) {
+            int eq = line.indexOf('=');
+            if (eq < 0) {
+                rowsList.add(line);
+                continue;
+            }
+            String key = line.substring(0, eq).trim();
+            int value = Integer.parseInt(line.substring(eq + 1).trim());
+            if (key.equals("speed")) {
+                speed = value;
+            } else if (key.equals("frightened")) {
+                frightened = value;
+            } else {
+                throw new IllegalArgumentException("unknown setting " + key);
+            }
+        }
+        if (rowsList.isEmpty()) {
+            throw new IllegalArgumentException("no maze rows");
+        }
+
+        int rows = rowsList.size();
+        int cols = rowsList.get(0).length();
+        if (out.screenData == null || out.rows != rows || out.cols != cols) {
+            out.screenData = new short[rows][cols];
+            out.levelData = new String[rows];
+        }
+        if (out.ghostX == null || out.ghostX.length != nGhosts) {
+            out.ghostX = new int[nGhosts];
+            out.ghostY = new int[nGhosts];
+        }
+        out.number = number;
+        out.rows = rows;
+        out.cols = cols;
+        out.dotsLeft = 0;
+        out.ghostCount = 0;
+        out.pacmanX = -1;
+        for (int i = 0; i < rows; i++) {
+            String row = rowsList.get(i);
+            if (row.length() != cols) {
+                throw new IllegalArgumentException("row " + (i + 1) + " is " + row.length() + " wide, expected " + cols);
+            }
+            out.levelData[i] = row;
+            for (int j = 0; j < cols; j++) {
+                char cell = row.charAt(j);
+                if (cell == '1') {
+                    out.screenData[i][j] = 1;
+                } else if (cell == '0') {
+                    out.screenData[i][j] = 0;
+                    out.dotsLeft++;
+                } else if (cell == '2') {
+                    out.screenData[i][j] = 2;
+                    out.dotsLeft++;
+                } else if (cell == 'P' || cell == 'G' || cell == 'E') {
+                    out.screenData[i][j] = 16;
+                    if (cell == 'P') {
+                        out.pacmanX = j;
+                        out.pacmanY = i;
+                    } else if (cell == 'G') {
+                        if (out.ghostCount < nGhosts) {
+                            out.ghostX[out.ghostCount] = j;
+                            out.ghostY[out.ghostCount] = i;
+                        }
+                        out.ghostCount++;
+                    }
+                } else {
+                    throw new IllegalArgumentException("unknown maze character '" + cell + "'");
+                }
+            }
+        }
+        if (out.pacmanX < 0) {
+            throw new IllegalArgumentException("no Pac-Man start (P)");
+        }
+        if (out.ghostCount == 0) {
+            throw new IllegalArgumentException("no ghost start (G)");
+        }
+        // With fewer starts than ghosts, the extra ghosts share them in turn
+        out.ghostCount = Math.min(out.ghostCount, nGhosts);
+        for (int g = out.ghostCount; g < nGhosts; g++) {
+            out.ghostX[g] = out.ghostX[g % out.ghostCount];
+            out.ghostY[g] = out.ghostY[g % out.ghostCount];
+        }
+
+        int extra = Math.max(0, number - sections.size());
+        if (speed < 0) {
+            speed = BASE_SPEED - (number - 1) * SPEED_STEP;
+        } else {
+            speed -= extra * SPEED_STEP;
+        }
+        out.speed = Math.max(speed, MIN_SPEED);
+        out.frightenedDuration = frightened;
+        out.mazeRecord = EventLog.mazeRecord(out.levelData, out.mazeRecord);
+    }
+}
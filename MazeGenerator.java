@@ -0,0 +1,332 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Procedural generator for Pac-Man style mazes in the same character format as
+ * Board.levelDataString ('1' wall, '0' dot, '2' power pellet, 'P' start, 'G' ghost start,
+ * 'E' empty).
+ *
+ * Mazes are left/right symmetric like the arcade board: the left half is carved as a random
+ * spanning tree over a lattice of corridor cells, extra links remove its dead ends, and the
+ * result is mirrored. A ghost house with four 'G' spawns and a ring corridor sits in the
+ * middle, a wrap-around tunnel runs through the house row, and a final pass carves
+ * through walls until every open cell is reachable from 'P'.
+ *
+ * The output depends only on the seed and the size, so a maze can always be regenerated
+ * from the seed it was recorded with.
+ */
+class MazeGenerator {
+
+    static final int MIN_ROWS = 21;
+    static final int MIN_COLS = 19;
+
+    private static final char WALL = '1';
+    private static final char DOT = '0';
+    private static final char PELLET = '2';
+    private static final char EMPTY = 'E';
+    private static final char GHOST = 'G';
+    private static final char PACMAN = 'P';
+
+    private final int rows, cols;
+    private final int mid;            // Centre column, or the left one of the two centre columns
+    private final char[][] grid;
+    private final boolean[][] fixed;  // Border and ghost house walls the repair pass may not carve
+    private final SplittableRandom random;
+
+    private MazeGenerator(int rows, int cols, long seed) {
+        this.rows = rows;
+        this.cols = cols;
+        this.mid = (cols - 1) / 2;
+        this.grid = new char[rows][cols];
+        this.fixed = new boolean[rows][cols];
+        this.random = new SplittableRandom(seed);
+    }
+
+    static String[] generate(int rows, int cols, long seed) {
+        if (rows < MIN_ROWS || cols < MIN_COLS) {
+            throw new IllegalArgumentException("Maze must be at least " + MIN_ROWS + "x" + MIN_COLS
+                    + ", got " + rows + "x" + cols);
+        }
+        return new MazeGenerator(rows, cols, seed).build();
+    }
+
+    // Generates count mazes in parallel; maze i is the same as generate(rows, cols, seedFor(seed, i))
+    static String[][] generateBatch(int rows, int cols, long seed, int count) {
+        return IntStream.range(0, count)
+                .parallel()
+                .mapToObj(i -> generate(rows, cols, seedFor(seed, i)))
+                .toArray(String[][]::new);
+    }
+
+    static long seedFor(long seed, int index) {
+        // SplitMix64 finaliser, so neighbouring indexes get unrelated streams
+        long z = seed + (index + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private String[] build() {
+        for (char[] row : grid) {
+            Arrays.fill(row, WALL);
+        }
+        for (int c = 0; c < cols; c++) {
+            fixed[0][c] = true;
+            fixed[rows - 1][c] = true;
+        }
+        for (int r = 0; r < rows; r++) {
+            fixed[r][0] = true;
+            fixed[r][cols - 1] = true;
+        }
+
+        carveLattice();
+
+        // Ghost house rows sit just above the middle, on a lattice row so the tunnel meets a corridor
+        int houseRow = (rows / 2 - 1) | 1;
+        placeGhostHouse(houseRow);
+        setSym(houseRow, 0, DOT); // Tunnel; Board wraps any open cell on the outer columns
+        fixed[houseRow][0] = false;
+        fixed[houseRow][cols - 1] = false;
+        grid[houseRow + 3][mid] = PACMAN;
+
+        connectAll(houseRow + 3, mid);
+        placePellets();
+
+        String[] out = new String[rows];
+        for (int r = 0; r < rows; r++) {
+            out[r] = new String(grid[r]);
+        }
+        return out;
+    }
+
+    // Random spanning tree over the odd (row, col) lattice of the left half, then braided
+    private void carveLattice() {
+        int latRows = (rows - 1) / 2;
+        int latCols = (mid + 1) / 2;          // Lattice columns 1, 3, ... up to mid
+        boolean centreIsLattice = (mid & 1) == 1;
+        int n = latRows * latCols;
+
+        // Randomised Kruskal: shuffle every right/down link and keep the ones joining two trees
+        int[] parent = new int[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+        }
+        int[] links = new int[n * 2];
+        int nLinks = 0;
+        for (int i = 0; i < n; i++) {
+            if (i % latCols < latCols - 1) links[nLinks++] = i * 2;      // Right
+            if (i / latCols < latRows - 1) links[nLinks++] = i * 2 + 1;  // Down
+        }
+        for (int i = nLinks - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = links[i]; links[i] = links[j]; links[j] = t;
+        }
+        int[] degree = new int[n];
+        for (int k = 0; k < nLinks; k++) {
+            int a = links[k] >> 1;
+            int b = (links[k] & 1) == 0 ? a + 1 : a + latCols;
+            int ra = find(parent, a), rb = find(parent, b);
+            if (ra != rb) {
+                parent[ra] = rb;
+                carveLink(a, b, latCols);
+                degree[a]++;
+                degree[b]++;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            setSym(latRow(i, latCols), latCol(i, latCols), DOT);
+        }
+
+        // Cells in the last lattice column also link across the centre line
+        if (!centreIsLattice) {
+            for (int r = 0; r < latRows; r++) {
+                if (random.nextInt(3) == 0) {
+                    int i = r * latCols + latCols - 1;
+                    setSym(latRow(i, latCols), mid, DOT);
+                    degree[i]++;
+                }
+            }
+        }
+
+        // Braid: give every dead end a second way out, preferring a neighbouring dead end
+        int[] candidates = new int[4];
+        for (int i = 0; i < n; i++) {
+            if (degree[i] != 1) {
+                continue;
+            }
+            int r = latRow(i, latCols), c = latCol(i, latCols);
+            int count = 0;
+            int[] steps = {-latCols, latCols, -1, 1};
+            for (int s = 0; s < 4; s++) {
+                int j = i + steps[s];
+                boolean inside = (s < 2) ? (j >= 0 && j < n) : (j / latCols == i / latCols && j >= 0);
+                if (inside && grid[(r + latRow(j, latCols)) / 2][(c + latCol(j, latCols)) / 2] == WALL) {
+                    candidates[count++] = j;
+                }
+            }
+            if (count == 0) {
+                if (!centreIsLattice && i % latCols == latCols - 1) {
+                    setSym(r, mid, DOT);
+                    degree[i]++;
+                }
+                continue;
+            }
+            int pick = candidates[random.nextInt(count)];
+            for (int k = 0; k < count; k++) {
+                if (degree[candidates[k]] == 1) {
+                    pick = candidates[k];
+                    break;
+                }
+            }
+            carveLink(i, pick, latCols);
+            degree[i]++;
+            degree[pick]++;
+        }
+    }
+
+    private static int latRow(int i, int latCols) {
+        return (i / latCols) * 2 + 1;
+    }
+
+    private static int latCol(int i, int latCols) {
+        return (i % latCols) * 2 + 1;
+    }
+
+    private void carveLink(int a, int b, int latCols) {
+        setSym((latRow(a, latCols) + latRow(b, latCols)) / 2, (latCol(a, latCols) + latCol(b, latCols)) / 2, DOT);
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    // House interior on rows houseRow and houseRow+1 with a door on top, inside a ring corridor
+    private void placeGhostHouse(int houseRow) {
+        int top = houseRow - 2, bottom = houseRow + 3;
+        for (int r = top; r <= bottom; r++) {
+            for (int c = mid - 4; c <= mid; c++) {
+                setSym(r, c, DOT);
+                fixedSym(r, c, false);
+            }
+        }
+        for (int r = houseRow - 1; r <= houseRow + 2; r++) {
+            for (int c = mid - 3; c <= mid; c++) {
+                boolean wall = r == houseRow - 1 || r == houseRow + 2 || c == mid - 3;
+                setSym(r, c, wall ? WALL : EMPTY);
+                fixedSym(r, c, true);
+            }
+        }
+        setSym(houseRow - 1, mid, EMPTY); // Door
+        setSym(houseRow, mid - 2, GHOST);
+        setSym(houseRow + 1, mid - 2, GHOST);
+    }
+
+    // Flood fills from the start and carves the shortest wall path to each unreached pocket
+    private void connectAll(int startRow, int startCol) {
+        boolean[][] reached = new boolean[rows][cols];
+        int[] queue = new int[rows * cols];
+        int[] from = new int[rows * cols];
+        int[] dr = {-1, 1, 0, 0}, dc = {0, 0, -1, 1};
+
+        flood(reached, queue, startRow, startCol, dr, dc);
+        while (true) {
+            // Multi-source BFS out of the reached region, through carvable walls
+            Arrays.fill(from, -2);
+            int head = 0, tail = 0;
+            for (int r = 0; r < rows; r++) {
+                for (int c = 0; c < cols; c++) {
+                    if (reached[r][c]) {
+                        queue[tail++] = r * cols + c;
+                        from[r * cols + c] = -1;
+                    }
+                }
+            }
+            int target = -1;
+            while (head < tail && target < 0) {
+                int cell = queue[head++];
+                int r = cell / cols, c = cell % cols;
+                for (int d = 0; d < 4; d++) {
+                    int nr = r + dr[d], nc = c + dc[d];
+                    if (nr < 0 || nr >= rows || nc < 0 || nc >= cols) continue;
+                    int ni = nr * cols + nc;
+                    if (from[ni] != -2) continue;
+                    if (grid[nr][nc] != WALL) {
+                        from[ni] = cell;
+                        target = ni;
+                        break;
+                    }
+                    if (fixed[nr][nc]) continue;
+                    from[ni] = cell;
+                    queue[tail++] = ni;
+                }
+            }
+            if (target < 0) {
+                return;
+            }
+            for (int cell = from[target]; from[cell] != -1; cell = from[cell]) {
+                setSym(cell / cols, cell % cols, DOT);
+            }
+            flood(reached, queue, startRow, startCol, dr, dc);
+        }
+    }
+
+    private void flood(boolean[][] reached, int[] queue, int startRow, int startCol, int[] dr, int[] dc) {
+        for (boolean[] row : reached) {
+            Arrays.fill(row, false);
+        }
+        int head = 0, tail = 0;
+        queue[tail++] = startRow * cols + startCol;
+        reached[startRow][startCol] = true;
+        while (head < tail) {
+            int cell = queue[head++];
+            int r = cell / cols, c = cell % cols;
+            for (int d = 0; d < 4; d++) {
+                int nr = r + dr[d], nc = (c + dc[d] + cols) % cols; // Tunnel wraps
+                if (nr < 0 || nr >= rows || reached[nr][nc] || grid[nr][nc] == WALL) continue;
+                reached[nr][nc] = true;
+                queue[tail++] = nr * cols + nc;
+            }
+        }
+    }
+
+    // One power pellet in the dot nearest each corner
+    private void placePellets() {
+        int[][] corners = {{1, 1}, {rows - 2, 1}};
+        for (int[] corner : corners) {
+            ArrayDeque<int[]> queue = new ArrayDeque<>();
+            boolean[][] seen = new boolean[rows][cols];
+            queue.add(corner);
+            seen[corner[0]][corner[1]] = true;
+            while (!queue.isEmpty()) {
+                int[] p = queue.poll();
+                if (grid[p[0]][p[1]] == DOT && p[1] != 0) {
+                    setSym(p[0], p[1], PELLET);
+                    break;
+                }
+                int[][] next = {{p[0] - 1, p[1]}, {p[0] + 1, p[1]}, {p[0], p[1] - 1}, {p[0], p[1] + 1}};
+                for (int[] q : next) {
+                    if (q[0] > 0 && q[0] < rows - 1 && q[1] > 0 && q[1] <= mid && !seen[q[0]][q[1]]) {
+                        seen[q[0]][q[1]] = true;
+                        queue.add(q);
+                    }
+                }
+            }
+        }
+    }
+
+    private void setSym(int r, int c, char ch) {
+        grid[r][c] = ch;
+        grid[r][cols - 1 - c] = ch;
+    }
+
+    private void fixedSym(int r, int c, boolean value) {
+        fixed[r][c] = value;
+        fixed[r][cols - 1 - c] = value;
+    }
+}
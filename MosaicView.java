@@ -0,0 +1,388 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Wall view of many games at once: java PacManGame --mosaic [N]
+ *
+ * Each game is a Board without timers, ticked here at its own level's speed, with Pac-Man on
+ * the benchmark's random walk. Painting every board the way Board.paintComponent does would
+ * redraw each maze every frame, so the view keeps one canvas for the whole window and per game
+ * only touches the tiles that changed since they were last drawn: where an actor was or now is,
+ * and dots eaten in between. A tile is redrawn by copying it from a pristine maze layer, shared
+ * by all games on the same maze, and blacking out its dot if eaten; sprites come from one
+ * SpriteCache shared by all games and are clipped to their tile, so they never leave anything
+ * behind on a neighbour. Games that did not change are not touched at all, and a frame ends
+ * with a single copy of the canvas to the screen.
+ */
+class MosaicView extends JPanel implements ActionListener {
+
+    private static final long serialVersionUID = 1L;
+
+    static final int DEFAULT_GAMES = 36;
+    static final int MAX_GAMES = 100;
+    private static final int FRAME_MILLIS = 15;   // How often to check for due ticks, about 60 per second
+    private static final double HUD_TILES = 1.5;  // Height of the score line under each maze, in tiles
+    private static final int GAP = 4;             // Device pixels between cells
+
+    // One game and what was last drawn of it
+    private static final class Cell {
+        final Board board;
+        final Random walk;
+        final Board.State drawn;
+        final Board.State now;
+        boolean valid;            // drawn matches the canvas; false forces a full redraw
+        long nextTick;            // System.nanoTime() when the next tick is due
+        int x, y;                 // Device position of the maze's top-left corner on the canvas
+
+        Cell(Board board, long seed) {
+            this.board = board;
+            this.walk = new Random(seed);
+            this.drawn = board.newState();
+            this.now = board.newState();
+        }
+    }
+
+    private final Cell[] cells;
+    private final Timer timer;
+    private final GameMetrics metrics;  // null when not reported
+    private boolean framePending;
+
+    // Layout and caches, rebuilt when the window size or scale changes
+    private BufferedImage canvas;
+    private double canvasScale;
+    private int mazeRows, mazeCols;    // Largest maze seen; every cell is laid out for it
+    private SpriteCache sprites;
+    private int hudHeight;
+    private Font hudFont;
+    private final Map<List<String>, BufferedImage> mazeLayers = new HashMap<>();
+    private final int[] dirty = new int[64]; // Tiles to redraw in the current cell, as row * cols + col
+    private final AffineTransform deviceTransform = new AffineTransform();
+
+    MosaicView(LevelPack pack, int games, GameMetrics metrics) {
+        this.metrics = metrics;
+        cells = new Cell[games];
+        long start = System.nanoTime();
+        for (int i = 0; i < games; i++) {
+            Board board = new Board(pack, false);
+            if (metrics != null) {
+                board.setMetrics(metrics.newSession());
+            }
+            board.setSeed(i + 1);
+            board.newGame();
+            cells[i] = new Cell(board, i + 1);
+            cells[i].nextTick = start;
+        }
+        setBackground(Color.BLACK);
+        setPreferredSize(new Dimension(1280, 800));
+        timer = new Timer(FRAME_MILLIS, this);
+    }
+
+    // Records every game played from now on, each cell with its own recorder
+    void setArchive(ReplayArchive.Writer archive) {
+        for (Cell cell : cells) {
+            cell.board.setRecorder(archive.newRecorder());
+        }
+    }
+
+    void start() {
+        timer.start();
+    }
+
+    // Runs every game's due ticks; games that end start over straight away
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        long now = System.nanoTime();
+        boolean ticked = false;
+        for (Cell cell : cells) {
+            Board board = cell.board;
+            while (now - cell.nextTick >= 0) {
+                if (!board.isInGame()) {
+                    board.newGame();
+                } else if (board.isLevelCleared()) {
+                    board.startNextLevel();
+                } else {
+                    Benchmark.steer(board, cell.walk);
+                    board.tick();
+                }
+                cell.nextTick += board.getTickMillis() * 1_000_000L;
+                if (now - cell.nextTick > 1_000_000_000L) {
+                    cell.nextTick = now; // Fell far behind, e.g. the machine slept; don't race to catch up
+                }
+                ticked = true;
+            }
+        }
+        if (ticked) {
+            if (framePending && metrics != null) {
+                metrics.frameDropped();
+            }
+            framePending = true;
+            repaint();
+        }
+    }
+
+    @Override
+    public void paintComponent(Graphics g) {
+        long frameStart = System.nanoTime();
+        framePending = false;
+        Graphics2D g2d = (Graphics2D) g;
+        AffineTransform screen = g2d.getTransform();
+        double deviceScale = screen.getScaleX();
+        int width = (int) Math.ceil(getWidth() * deviceScale);
+        int height = (int) Math.ceil(getHeight() * deviceScale);
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+
+        for (Cell cell : cells) {
+            cell.board.saveState(cell.now);
+            String[] maze = cell.board.getLevelData();
+            if (maze.length > mazeRows || maze[0].length() > mazeCols) {
+                mazeRows = Math.max(mazeRows, maze.length);
+                mazeCols = Math.max(mazeCols, maze[0].length());
+                canvas = null;
+            }
+        }
+        if (canvas == null || canvas.getWidth() != width || canvas.getHeight() != height || canvasScale != deviceScale) {
+            layout(width, height);
+            canvasScale = deviceScale;
+        }
+
+        Graphics2D cg = canvas.createGraphics();
+        cg.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        for (Cell cell : cells) {
+            drawCell(cg, cell);
+        }
+        cg.dispose();
+
+        // Device pixels, so the canvas is copied 1:1
+        deviceTransform.setToTranslation(screen.getTranslateX(), screen.getTranslateY());
+        g2d.setTransform(deviceTransform);
+        g2d.drawImage(canvas, 0, 0, null);
+        g2d.setTransform(screen);
+        Toolkit.getDefaultToolkit().sync();
+        if (metrics != null) {
+            metrics.frameRendered(System.nanoTime() - frameStart);
+        }
+    }
+
+    // Picks the grid with the largest tiles that fits every cell and drops everything drawn
+    private void layout(int width, int height) {
+        int n = cells.length;
+        int bestTile = 0, bestCols = 1;
+        for (int cols = 1; cols <= n; cols++) {
+            int rows = (n + cols - 1) / cols;
+            int cellW = width / cols - GAP;
+            int cellH = height / rows - GAP;
+            int tile = (int) Math.min(cellW / (double) mazeCols, cellH / (mazeRows + HUD_TILES));
+            if (tile > bestTile) {
+                bestTile = tile;
+                bestCols = cols;
+            }
+        }
+        int tilePx = Math.max(bestTile, 2);
+        int cols = bestCols;
+        int rows = (n + cols - 1) / cols;
+        hudHeight = (int) (tilePx * HUD_TILES);
+        hudFont = new Font("Arial", Font.BOLD, Math.max(hudHeight - 1, 6)); // Digits have no descenders
+        int cellW = mazeCols * tilePx + GAP;
+        int cellH = mazeRows * tilePx + hudHeight + GAP;
+        int left = Math.max((width - cols * cellW) / 2, 0) + GAP / 2;
+        int top = Math.max((height - rows * cellH) / 2, 0) + GAP / 2;
+        for (int i = 0; i < n; i++) {
+            cells[i].x = left + (i % cols) * cellW;
+            cells[i].y = top + (i / cols) * cellH;
+            cells[i].valid = false;
+        }
+
+        GraphicsConfiguration gc = getGraphicsConfiguration();
+        if (sprites == null || sprites.tilePx != tilePx) {
+            sprites = new SpriteCache(tilePx, cells[0].now.ghostX.length, gc);
+            mazeLayers.clear();
+        }
+        canvas = sprites.newImage(width, height, true);
+        Graphics2D g = canvas.createGraphics();
+        g.setColor(Color.BLACK);
+        g.fillRect(0, 0, width, height);
+        g.dispose();
+    }
+
+    private void drawCell(Graphics2D g, Cell cell) {
+        Board.State was = cell.drawn;
+        Board.State now = cell.now;
+        BufferedImage maze = mazeLayer(cell.board.getLevelData());
+
+        if (!cell.valid || was.loadedLevel != now.loadedLevel || was.runTicks > now.runTicks
+                || was.journalSize > now.journalSize) {
+            // New level or new game: the whole maze, then dots already gone
+            g.drawImage(maze, cell.x, cell.y, null);
+            g.setColor(Color.BLACK);
+            String[] level = cell.board.getLevelData();
+            g.fillRect(cell.x + level[0].length() * sprites.tilePx, cell.y,
+                       (mazeCols - level[0].length()) * sprites.tilePx, mazeRows * sprites.tilePx);
+            g.fillRect(cell.x, cell.y + level.length * sprites.tilePx,
+                       mazeCols * sprites.tilePx, (mazeRows - level.length) * sprites.tilePx);
+            for (int i = 0; i < now.journalSize; i++) {
+                int tile = cell.board.eatenTile(i);
+                drawTile(g, cell, maze, tile / level[0].length(), tile % level[0].length());
+            }
+            drawActors(g, cell, null, 0);
+            drawHud(g, cell);
+            cell.valid = true;
+        } else if (!sameFrame(was, now, cell.board.getFrightenedDuration())) {
+            int cols = cell.board.getLevelData()[0].length();
+            int count = 0;
+            count = addTile(count, was.pacmanY * cols + was.pacmanX);
+            count = addTile(count, now.pacmanY * cols + now.pacmanX);
+            for (int i = 0; i < now.ghostX.length; i++) {
+                count = addTile(count, was.ghostY[i] * cols + was.ghostX[i]);
+                count = addTile(count, now.ghostY[i] * cols + now.ghostX[i]);
+            }
+            for (int i = was.journalSize; i < now.journalSize && count < dirty.length; i++) {
+                count = addTile(count, cell.board.eatenTile(i));
+            }
+            if (count == dirty.length) {
+                cell.valid = false; // Fell too far behind; redraw the whole cell
+                drawCell(g, cell);
+                return;
+            }
+            for (int i = 0; i < count; i++) {
+                drawTile(g, cell, maze, dirty[i] / cols, dirty[i] % cols);
+            }
+            drawActors(g, cell, dirty, count);
+            if (was.score != now.score || was.lives != now.lives) {
+                drawHud(g, cell);
+            }
+        } else {
+            return; // Nothing changed; the cell on the canvas is still right
+        }
+        cell.board.saveState(was);
+    }
+
+    private int addTile(int count, int tile) {
+        for (int i = 0; i < count; i++) {
+            if (dirty[i] == tile) {
+                return count;
+            }
+        }
+        if (count < dirty.length) {
+            dirty[count++] = tile;
+        }
+        return count;
+    }
+
+    // Whether the two states would be drawn the same
+    private static boolean sameFrame(Board.State a, Board.State b, int frightenedDuration) {
+        if (Board.isFlashing(a.frightenedTimer, frightenedDuration)
+                != Board.isFlashing(b.frightenedTimer, frightenedDuration)) {
+            return false;
+        }
+        if (a.pacmanX != b.pacmanX || a.pacmanY != b.pacmanY || a.pacmanDX != b.pacmanDX || a.pacmanDY != b.pacmanDY
+                || (a.runTicks & 1) != (b.runTicks & 1) || a.journalSize != b.journalSize
+                || a.score != b.score || a.lives != b.lives || a.inGame != b.inGame || a.win != b.win) {
+            return false;
+        }
+        return Arrays.equals(a.ghostX, b.ghostX) && Arrays.equals(a.ghostY, b.ghostY)
+                && Arrays.equals(a.ghostDX, b.ghostDX) && Arrays.equals(a.ghostDY, b.ghostDY)
+                && Arrays.equals(a.ghostFrightened, b.ghostFrightened);
+    }
+
+    // Copies one tile from the pristine maze and blacks out its dot if that has been eaten
+    private void drawTile(Graphics2D g, Cell cell, BufferedImage maze, int row, int col) {
+        int tilePx = sprites.tilePx;
+        int sx = col * tilePx;
+        int sy = row * tilePx;
+        int dx = cell.x + sx;
+        int dy = cell.y + sy;
+        g.drawImage(maze, dx, dy, dx + tilePx, dy + tilePx, sx, sy, sx + tilePx, sy + tilePx, null);
+        if (cell.board.tileAt(col, row) == 16) {
+            int half = (int) Math.ceil(5 * sprites.scale);
+            g.setColor(Color.BLACK);
+            g.fillRect(dx + tilePx / 2 - half, dy + tilePx / 2 - half, half * 2, half * 2);
+        }
+    }
+
+    // Draws the actors standing on one of the given tiles, or all of them when tiles is null
+    private void drawActors(Graphics2D g, Cell cell, int[] tiles, int count) {
+        Board.State s = cell.now;
+        if (!s.inGame || s.win) {
+            return;
+        }
+        int cols = cell.board.getLevelData()[0].length();
+        boolean flash = Board.isFlashing(s.frightenedTimer, cell.board.getFrightenedDuration());
+        for (int i = 0; i < s.ghostX.length; i++) {
+            if (tiles == null || contains(tiles, count, s.ghostY[i] * cols + s.ghostX[i])) {
+                BufferedImage sprite = s.ghostFrightened[i] ? sprites.frightenedGhost(flash, 0)
+                        : sprites.ghost(i, Board.facing(s.ghostDX[i], s.ghostDY[i]), 0);
+                drawSprite(g, cell, sprite, s.ghostX[i], s.ghostY[i]);
+            }
+        }
+        if (tiles == null || contains(tiles, count, s.pacmanY * cols + s.pacmanX)) {
+            int mouth = (s.runTicks & 1) == 0 ? 45 : 0; // Board's mouth also just opens and shuts
+            drawSprite(g, cell, sprites.pacman(Board.facing(s.pacmanDX, s.pacmanDY), mouth), s.pacmanX, s.pacmanY);
+        }
+    }
+
+    private static boolean contains(int[] tiles, int count, int tile) {
+        for (int i = 0; i < count; i++) {
+            if (tiles[i] == tile) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Sprites overhang their tile; clipped so erasing the tile erases all of it
+    private void drawSprite(Graphics2D g, Cell cell, BufferedImage sprite, int tileX, int tileY) {
+        int tilePx = sprites.tilePx;
+        int x = cell.x + tileX * tilePx;
+        int y = cell.y + tileY * tilePx;
+        g.setClip(x, y, tilePx, tilePx);
+        g.drawImage(sprite, x + sprites.offset, y + sprites.offset, null);
+        g.setClip(null);
+    }
+
+    private void drawHud(Graphics2D g, Cell cell) {
+        Board.State s = cell.now;
+        int tilePx = sprites.tilePx;
+        int y = cell.y + mazeRows * tilePx;
+        int width = mazeCols * tilePx;
+        g.setColor(Color.BLACK);
+        g.fillRect(cell.x, y, width, hudHeight);
+        g.setFont(hudFont);
+        g.setColor(Color.WHITE);
+        g.drawString(Integer.toString(s.score), cell.x + 2, y + hudHeight - 2);
+        int lifeSize = Math.max(hudHeight * 2 / 3, 2);
+        for (int i = 0; i < s.lives; i++) {
+            g.setColor(Color.YELLOW);
+            g.fillArc(cell.x + width - (i + 1) * (lifeSize + 3), y + (hudHeight - lifeSize) / 2,
+                      lifeSize, lifeSize, 45, 270);
+        }
+    }
+
+    // The maze with all its dots at the current tile size, drawn once and shared by every game on it
+    private BufferedImage mazeLayer(String[] levelData) {
+        BufferedImage layer = mazeLayers.get(Arrays.asList(levelData));
+        if (layer == null) {
+            LevelPack.Level level = new LevelPack.Level();
+            LevelPack.single(levelData).compileInto(1, level, 0);
+            int tilePx = sprites.tilePx;
+            layer = sprites.newImage(level.cols * tilePx, level.rows * tilePx, true);
+            Graphics2D g = layer.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.scale(sprites.scale, sprites.scale);
+            Board.drawMazeTiles(g, level.screenData, Board.TILE_SIZE, 0);
+            g.dispose();
+            mazeLayers.put(List.of(levelData), layer); // A copy: Board reuses the array for a later level
+        }
+        return layer;
+    }
+}
@@ -0,0 +1,660 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Recorded games, any number of them in one file, opened memory-mapped for replay and seeking.
+ *
+ * The file is a header followed by checksummed records: GAME records, as made by
+ * ReplayRecorder, and PACK records holding the text of a level pack, written once and shared by
+ * every game played on it. Closing the Writer appends an index of where each game starts, with
+ * its length and score, so opening the archive reads that and maps the records without looking
+ * at them. If the index is missing, as after a crash, the records are scanned instead.
+ *
+ *   header:  int FILE_MAGIC, int VERSION
+ *   record:  int type, int payload length, int crc of the payload, payload
+ *   GAME:    long seed, long offset of its PACK record, int ticks, int final score,
+ *            int keyframe interval, int ghosts, int[ghosts] GhostTargeting codes,
+ *            int keyframes, int[keyframes] keyframe offsets in the payload,
+ *            byte[ticks] inputs, keyframes (long checksum, int tiles, Board.State, byte[tiles])
+ *   index:   per game long offset, int ticks, int score; per pack long offset;
+ *            then long index offset, int games, int packs, int crc, int INDEX_MAGIC
+ *
+ * Replay.seek() restores the keyframe at or before the wanted tick and re-runs at most
+ * KEYFRAME_INTERVAL - 1 ticks from the recorded inputs, so any tick of any game is a
+ * millisecond or so away however long the game or the archive.
+ */
+class ReplayArchive implements AutoCloseable {
+
+    static final int FILE_MAGIC = 0x50414352;  // "PACR"
+    static final int VERSION = 1;
+    static final int INDEX_MAGIC = 0x50494458; // "PIDX"
+
+    private static final int GAME = 1, PACK = 2;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_HEADER = 12;
+    private static final int FOOTER_SIZE = 8 + 4 + 4 + 4 + 4;
+    private static final int ENTRY_SIZE = 8 + 4 + 4;
+    private static final long MAP_WINDOW = 1L << 30; // Records never straddle windows, so they can be larger
+
+    private final Path path;
+    private final FileChannel channel;
+    private final Index index;
+    private final long[] windowStarts;
+    private final MappedByteBuffer[] windows;
+    private final Map<Long, LevelPack> packs = new HashMap<>();
+
+    private ReplayArchive(Path path, long mapWindow) throws IOException {
+        this.path = path;
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            checkHeader(channel, path);
+            Index found = readIndex(channel, null);
+            long dataEnd;
+            if (found != null) {
+                dataEnd = found.end;
+            } else {
+                found = new Index();
+                dataEnd = scan(channel, found, null);
+            }
+            index = found;
+
+            // Cut the data into windows at game boundaries; a PACK record sits between two games
+            List<MappedByteBuffer> mapped = new ArrayList<>();
+            List<Long> starts = new ArrayList<>();
+            long start = HEADER_SIZE, last = HEADER_SIZE;
+            for (int i = 0; i <= index.count; i++) {
+                long boundary = i < index.count ? index.offsets[i] : dataEnd;
+                if (boundary - start > mapWindow && last > start) {
+                    starts.add(start);
+                    mapped.add(channel.map(FileChannel.MapMode.READ_ONLY, start, last - start));
+                    start = last;
+                }
+                last = boundary;
+            }
+            starts.add(start);
+            mapped.add(channel.map(FileChannel.MapMode.READ_ONLY, start, dataEnd - start));
+            windows = mapped.toArray(new MappedByteBuffer[0]);
+            windowStarts = starts.stream().mapToLong(Long::longValue).toArray();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    static ReplayArchive open(Path path) throws IOException {
+        return new ReplayArchive(path, MAP_WINDOW);
+    }
+
+    // Smaller windows, to try files larger than one window without writing gigabytes
+    static ReplayArchive open(Path path, long mapWindow) throws IOException {
+        return new ReplayArchive(path, mapWindow);
+    }
+
+    int size() {
+        return index.count;
+    }
+
+    int ticks(int game) {
+        return index.ticks[game];
+    }
+
+    int score(int game) {
+        return index.scores[game];
+    }
+
+    // Highest-scoring game, the first of any tie; -1 if there are none
+    int best() {
+        int best = -1;
+        for (int i = 0; i < index.count; i++) {
+            if (best < 0 || index.scores[i] > index.scores[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /** A replay of the game on a fresh Board that no timer drives, positioned at tick 0. */
+    Replay replay(int game) throws IOException {
+        ByteBuffer payload = record(index.offsets[game], GAME);
+        long packOffset = payload.getLong(8);
+        LevelPack pack = packs.get(packOffset);
+        if (pack == null) {
+            ByteBuffer text = record(packOffset, PACK);
+            byte[] bytes = new byte[text.remaining()];
+            text.get(bytes);
+            String source = path + "@" + packOffset;
+            pack = LevelPack.parse(Arrays.asList(new String(bytes, StandardCharsets.UTF_8).split("\n")), source);
+            packs.put(packOffset, pack);
+        }
+        return new Replay(game, payload, pack);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close(); // The mappings stay valid until collected
+    }
+
+    // The payload of the record at offset, checked against its crc
+    private ByteBuffer record(long offset, int type) throws IOException {
+        int w = Arrays.binarySearch(windowStarts, offset);
+        if (w < 0) {
+            w = -w - 2;
+        }
+        if (w < 0) {
+            throw new IOException(path + ": no record at " + offset);
+        }
+        ByteBuffer window = windows[w];
+        int at = (int) (offset - windowStarts[w]);
+        if (at + RECORD_HEADER > window.limit() || window.getInt(at) != type) {
+            throw new IOException(path + ": no record of type " + type + " at " + offset);
+        }
+        int length = window.getInt(at + 4);
+        if (length < 0 || length > window.limit() - at - RECORD_HEADER) {
+            throw new IOException(path + ": record at " + offset + " runs past the data");
+        }
+        ByteBuffer payload = window.duplicate();
+        payload.position(at + RECORD_HEADER).limit(at + RECORD_HEADER + length);
+        payload = payload.slice();
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != window.getInt(at + 8)) {
+            throw new IOException(path + ": record at " + offset + " is corrupt");
+        }
+        return payload;
+    }
+
+    /** One recorded game played back on its own Board. Not thread-safe. */
+    static final class Replay {
+        private final int game;
+        private final ByteBuffer payload;
+        private final Board board;
+        private final Board.State state;
+        private final long seed;
+        private final int length, finalScore, interval, keyframeCount, keyframeTable, inputsAt;
+        private byte[] tiles = new byte[0];
+        private int tick;
+
+        private Replay(int game, ByteBuffer payload, LevelPack pack) {
+            this.game = game;
+            this.payload = payload;
+            seed = payload.getLong(0);
+            length = payload.getInt(16);
+            finalScore = payload.getInt(20);
+            interval = payload.getInt(24);
+            int ghosts = payload.getInt(28);
+            int[] targeting = new int[ghosts];
+            for (int i = 0; i < ghosts; i++) {
+                targeting[i] = payload.getInt(32 + 4 * i);
+            }
+            keyframeCount = payload.getInt(32 + 4 * ghosts);
+            keyframeTable = 32 + 4 * ghosts + 4;
+            inputsAt = keyframeTable + 4 * keyframeCount;
+
+            board = new Board(pack, false);
+            if (ghosts > 0) {
+                board.setGhostTargeting(targeting);
+            }
+            state = board.newState();
+            seek(0);
+        }
+
+        /**
+         * Puts the board where the game stood before the given tick, clamped to the game.
+         * Throws IllegalStateException if the game plays out differently than it was recorded,
+         * as it would after a change to the rules.
+         */
+        void seek(int target) {
+            target = Math.max(0, Math.min(target, length));
+            int k = Math.min(target / interval, keyframeCount - 1);
+            int at = payload.getInt(keyframeTable + 4 * k);
+            long checksum = payload.getLong(at);
+            int n = payload.getInt(at + 8);
+            ByteBuffer buf = payload.duplicate();
+            buf.position(at + 12);
+            state.readFrom(buf);
+            if (tiles.length != n) {
+                tiles = new byte[n];
+            }
+            buf.get(tiles);
+            board.restoreKeyframe(state, tiles);
+            if (board.checksum() != checksum) {
+                throw new IllegalStateException("Game " + game + " does not match its keyframe " + k);
+            }
+            tick = k * interval;
+            board.setReplaying(true); // Already heard the first time round
+            try {
+                while (tick < target) {
+                    step();
+                }
+            } finally {
+                board.setReplaying(false);
+            }
+        }
+
+        // Plays the next recorded tick; false once the game is over
+        boolean step() {
+            if (tick >= length) {
+                return false;
+            }
+            int dir = payload.get(inputsAt + tick) & ReplayRecorder.DIRECTION_MASK;
+            if (dir < ReplayRecorder.NO_DIRECTION) {
+                board.setRequestedDirection(Autopilot.DIR_X[dir], Autopilot.DIR_Y[dir]);
+            } else {
+                board.setRequestedDirection(0, 0);
+            }
+            board.tick();
+            tick++;
+            if (tick < length && (payload.get(inputsAt + tick) & ReplayRecorder.LEVEL_START) != 0) {
+                board.startNextLevel(); // Tick positions, like keyframes, come after a level starts
+            }
+            return true;
+        }
+
+        Board getBoard() {
+            return board;
+        }
+
+        int getGame() {
+            return game;
+        }
+
+        long getSeed() {
+            return seed;
+        }
+
+        // Ticks played so far, and the tick step() plays next
+        int getTick() {
+            return tick;
+        }
+
+        int length() {
+            return length;
+        }
+
+        int getFinalScore() {
+            return finalScore;
+        }
+    }
+
+    /**
+     * Appends games to an archive on a background thread. Reopening an archive carries on
+     * after its last game; a crash loses at most the games still queued, and anything torn at
+     * the end of the file is cut off the next time it is opened.
+     *
+     * record() never blocks during play: if the writer falls far behind, new games are dropped
+     * and counted. Only close() waits for room, to save every game that was under way.
+     *
+     * A Writer holds a lock on the file until it is closed, and opening a second Writer on it
+     * fails, since each would truncate and append at its own idea of the end.
+     */
+    static final class Writer implements AutoCloseable {
+        private static final int QUEUE_CAPACITY = 1024;
+        private static final long POLL_MS = 200;
+        private static final long CLOSE_WAIT_MS = 10_000; // For room in the queue while closing
+
+        private static final class Pending {
+            final String packText;
+            final byte[] payload;
+
+            Pending(String packText, byte[] payload) {
+                this.packText = packText;
+                this.payload = payload;
+            }
+        }
+
+        private final FileChannel channel;
+        private final BlockingQueue<Pending> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private final AtomicLong dropped = new AtomicLong();
+        private final List<ReplayRecorder> recorders = new CopyOnWriteArrayList<>();
+        private final Thread writer;
+        private volatile boolean finishing; // close() is saving the games under way
+        private volatile boolean closing;
+
+        // Owned by the writer thread after construction
+        private final Index index;
+        private final Map<String, Long> packOffsets;
+        private final List<Long> packList = new ArrayList<>();
+        private long end;
+
+        private Writer(Path path) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                       StandardOpenOption.WRITE);
+            try {
+                lock(path);
+                packOffsets = new HashMap<>();
+                if (channel.size() == 0) {
+                    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(FILE_MAGIC).putInt(VERSION);
+                    header.flip();
+                    while (header.hasRemaining()) {
+                        channel.write(header, header.position());
+                    }
+                    index = new Index();
+                    end = HEADER_SIZE;
+                } else {
+                    checkHeader(channel, path);
+                    Index found = readIndex(channel, packList);
+                    if (found != null) {
+                        for (long offset : packList) {
+                            packOffsets.put(readPack(offset), offset);
+                        }
+                        index = found;
+                        end = found.end;
+                    } else {
+                        index = new Index();
+                        end = scan(channel, index, packOffsets);
+                        packList.addAll(packOffsets.values());
+                    }
+                    channel.truncate(end); // New games go where the index was
+                }
+                channel.position(end);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+
+            writer = new Thread(this::writeLoop, "replay-writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
+
+        static Writer open(Path path) throws IOException {
+            return new Writer(path);
+        }
+
+        // Released when the channel is closed
+        private void lock(Path path) throws IOException {
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                lock = null; // Held by another Writer in this JVM
+            }
+            if (lock == null) {
+                throw new IOException(path + " is being recorded to by another game");
+            }
+        }
+
+        /** A recorder for one board; close() saves the game it has under way. */
+        ReplayRecorder newRecorder() {
+            ReplayRecorder recorder = new ReplayRecorder(this);
+            recorders.add(recorder);
+            return recorder;
+        }
+
+        // Copies a finished game out of the recorder's buffers and queues it. Never blocks.
+        boolean record(String packText, long seed, int[] ghostTargeting, int score, byte[] inputs, int ticks,
+                       ByteBuffer keyframes, int[] keyframeOffsets, int keyframeCount) {
+            if (closing) {
+                dropped.incrementAndGet();
+                return false;
+            }
+            int header = 32 + 4 * ghostTargeting.length + 4 + 4 * keyframeCount;
+            int base = header + ticks;
+            ByteBuffer buf = ByteBuffer.allocate(base + keyframes.position());
+            buf.putLong(seed).putLong(0).putInt(ticks).putInt(score)
+               .putInt(ReplayRecorder.KEYFRAME_INTERVAL).putInt(ghostTargeting.length);
+            for (int t : ghostTargeting) {
+                buf.putInt(t);
+            }
+            buf.putInt(keyframeCount);
+            for (int i = 0; i < keyframeCount; i++) {
+                buf.putInt(base + keyframeOffsets[i]);
+            }
+            buf.put(inputs, 0, ticks);
+            buf.put(keyframes.array(), 0, keyframes.position());
+            Pending p = new Pending(packText, buf.array());
+            boolean queued;
+            try {
+                queued = finishing ? queue.offer(p, CLOSE_WAIT_MS, TimeUnit.MILLISECONDS) : queue.offer(p);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                queued = false;
+            }
+            if (!queued) {
+                dropped.incrementAndGet();
+            }
+            return queued;
+        }
+
+        long droppedCount() {
+            return dropped.get();
+        }
+
+        /** Saves the games under way and everything queued, then writes the index and fsyncs. */
+        @Override
+        public void close() {
+            finishing = true;
+            for (ReplayRecorder recorder : recorders) {
+                recorder.finish();
+            }
+            closing = true; // The writer notices within POLL_MS; interrupting it would close the channel
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void writeLoop() {
+            try {
+                while (!closing || !queue.isEmpty()) {
+                    Pending p;
+                    try {
+                        p = queue.poll(POLL_MS, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        closing = true;
+                        continue;
+                    }
+                    if (p != null) {
+                        write(p);
+                    }
+                }
+                writeIndex();
+                channel.force(false);
+            } catch (IOException e) {
+                System.err.println("Replay archive: write failed, further games will not be saved: " + e);
+                closing = true;
+            } finally {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+        private void write(Pending p) throws IOException {
+            Long packOffset = packOffsets.get(p.packText);
+            if (packOffset == null) {
+                packOffset = end;
+                writeRecord(PACK, p.packText.getBytes(StandardCharsets.UTF_8));
+                packOffsets.put(p.packText, packOffset);
+                packList.add(packOffset);
+            }
+            ByteBuffer payload = ByteBuffer.wrap(p.payload);
+            payload.putLong(8, packOffset);
+            index.add(end, payload.getInt(16), payload.getInt(20));
+            writeRecord(GAME, p.payload);
+        }
+
+        private void writeRecord(int type, byte[] payload) throws IOException {
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            ByteBuffer[] bufs = {
+                ByteBuffer.allocate(RECORD_HEADER).putInt(type).putInt(payload.length).putInt((int) crc.getValue()),
+                ByteBuffer.wrap(payload)
+            };
+            bufs[0].flip();
+            while (bufs[0].hasRemaining() || bufs[1].hasRemaining()) {
+                channel.write(bufs);
+            }
+            end += RECORD_HEADER + payload.length;
+        }
+
+        private void writeIndex() throws IOException {
+            int size = index.count * ENTRY_SIZE + packList.size() * 8 + FOOTER_SIZE;
+            ByteBuffer buf = ByteBuffer.allocate(size);
+            for (int i = 0; i < index.count; i++) {
+                buf.putLong(index.offsets[i]).putInt(index.ticks[i]).putInt(index.scores[i]);
+            }
+            for (long offset : packList) {
+                buf.putLong(offset);
+            }
+            buf.putLong(end).putInt(index.count).putInt(packList.size());
+            CRC32 crc = new CRC32();
+            crc.update(buf.array(), 0, buf.position());
+            buf.putInt((int) crc.getValue()).putInt(INDEX_MAGIC);
+            buf.flip();
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+        }
+
+        private String readPack(long offset) throws IOException {
+            ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+            readFully(channel, header, offset);
+            if (header.getInt(0) != PACK) {
+                throw new IOException("No level pack at " + offset);
+            }
+            ByteBuffer text = ByteBuffer.allocate(header.getInt(4));
+            readFully(channel, text, offset + RECORD_HEADER);
+            return new String(text.array(), StandardCharsets.UTF_8);
+        }
+    }
+
+    // Where each game starts, with its length and score, in file order
+    private static final class Index {
+        long[] offsets = new long[64];
+        int[] ticks = new int[64];
+        int[] scores = new int[64];
+        int count;
+        long end; // End of the records, where the index was read from
+
+        void add(long offset, int length, int score) {
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+                ticks = Arrays.copyOf(ticks, count * 2);
+                scores = Arrays.copyOf(scores, count * 2);
+            }
+            offsets[count] = offset;
+            ticks[count] = length;
+            scores[count] = score;
+            count++;
+        }
+    }
+
+    private static void checkHeader(FileChannel channel, Path path) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (channel.size() < HEADER_SIZE) {
+            throw new IOException(path + ": not a replay archive");
+        }
+        readFully(channel, header, 0);
+        if (header.getInt(0) != FILE_MAGIC) {
+            throw new IOException(path + ": not a replay archive");
+        }
+        if (header.getInt(4) != VERSION) {
+            throw new IOException(path + ": replay archive version " + header.getInt(4) + ", expected " + VERSION);
+        }
+    }
+
+    // The index at the end of the file, mapped and checked; null if there is no intact one
+    private static Index readIndex(FileChannel channel, List<Long> packs) throws IOException {
+        long size = channel.size();
+        if (size < HEADER_SIZE + FOOTER_SIZE) {
+            return null;
+        }
+        ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+        readFully(channel, footer, size - FOOTER_SIZE);
+        long dataEnd = footer.getLong(0);
+        int games = footer.getInt(8);
+        int packCount = footer.getInt(12);
+        if (footer.getInt(20) != INDEX_MAGIC || games < 0 || packCount < 0 || dataEnd < HEADER_SIZE
+                || dataEnd + (long) games * ENTRY_SIZE + packCount * 8L + FOOTER_SIZE != size) {
+            return null;
+        }
+        MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, dataEnd, size - dataEnd);
+        CRC32 crc = new CRC32();
+        crc.update(buf.duplicate().limit(buf.limit() - 8));
+        if ((int) crc.getValue() != footer.getInt(16)) {
+            return null;
+        }
+        Index index = new Index();
+        for (int i = 0; i < games; i++) {
+            index.add(buf.getLong(), buf.getInt(), buf.getInt());
+        }
+        for (int i = 0; i < packCount && packs != null; i++) {
+            packs.add(buf.getLong());
+        }
+        index.end = dataEnd;
+        return index;
+    }
+
+    // Reads records from the start, stopping at the first torn or corrupt one; returns where it stopped
+    private static long scan(FileChannel channel, Index index, Map<String, Long> packs) throws IOException {
+        long size = channel.size();
+        long pos = HEADER_SIZE;
+        channel.position(pos);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+        byte[] payload = new byte[4096];
+        CRC32 crc = new CRC32();
+        try {
+            while (pos + RECORD_HEADER <= size) {
+                int type = in.readInt();
+                int length = in.readInt();
+                int expected = in.readInt();
+                if ((type != GAME && type != PACK) || length < 0 || length > size - pos - RECORD_HEADER) {
+                    break;
+                }
+                if (payload.length < length) {
+                    payload = new byte[Math.max(length, payload.length * 2)];
+                }
+                in.readFully(payload, 0, length);
+                crc.reset();
+                crc.update(payload, 0, length);
+                if ((int) crc.getValue() != expected) {
+                    break;
+                }
+                if (type == GAME) {
+                    ByteBuffer game = ByteBuffer.wrap(payload);
+                    index.add(pos, game.getInt(16), game.getInt(20));
+                } else if (packs != null) {
+                    packs.put(new String(payload, 0, length, StandardCharsets.UTF_8), pos);
+                }
+                pos += RECORD_HEADER + length;
+            }
+        } catch (EOFException e) {
+            // Torn record at the end
+        }
+        index.end = pos;
+        return pos;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buf, long offset) throws IOException {
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, offset + buf.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Records the games one Board plays, for a ReplayArchive.
+ *
+ * A game is kept as the seed it was dealt, one input byte per tick and a keyframe of the whole
+ * game every KEYFRAME_INTERVAL ticks; everything else follows from the rules. The input is
+ * Pac-Man's requested direction as it stands when the tick ends, which is what the tick acted
+ * on whether it came from the keyboard or the autopilot. A keyframe is the Board.State at the
+ * start of its tick plus the maze tiles, so a replay can jump there and re-run a few ticks
+ * rather than the game from the start.
+ *
+ * The board calls in from the thread that plays the game. Writer.close() finishes the game
+ * under way from another thread, hence the locks; they are never contended otherwise.
+ */
+class ReplayRecorder {
+
+    static final int KEYFRAME_INTERVAL = 256; // About 40 s of play at the base tick
+
+    // Input byte: an index into Autopilot.DIR_X/DIR_Y, or NO_DIRECTION, plus LEVEL_START
+    static final int NO_DIRECTION = 4;
+    static final int DIRECTION_MASK = 7;
+    static final int LEVEL_START = 8; // The next level began just before this tick
+
+    private final ReplayArchive.Writer archive;
+
+    // The game being recorded
+    private boolean recording;
+    private LevelPack pack;
+    private String packText;          // pack.toText(), kept while the pack stays the same
+    private int[] ghostTargeting;
+    private long seed;
+    private int ticks;
+    private int score;
+    private boolean levelStarted;
+    private byte[] inputs = new byte[4096];
+    private ByteBuffer keyframes = ByteBuffer.allocate(16 << 10);
+    private int[] keyframeOffsets = new int[16];
+    private int keyframeCount;
+
+    // Scratch for keyframes
+    private Board.State state;
+    private byte[] tiles = new byte[0];
+
+    ReplayRecorder(ReplayArchive.Writer archive) {
+        this.archive = archive;
+    }
+
+    // From Board.initGame(): a new game, or the next level of this one
+    synchronized void levelStarting(boolean newGame, LevelPack pack, int[] ghostTargeting, long seed) {
+        if (!newGame) {
+            levelStarted = recording;
+            return;
+        }
+        finish(); // A game still going was abandoned
+        if (pack != this.pack) {
+            this.pack = pack;
+            packText = pack.toText();
+        }
+        this.ghostTargeting = ghostTargeting;
+        this.seed = seed;
+        ticks = 0;
+        score = 0;
+        levelStarted = false;
+        keyframes.clear();
+        keyframeCount = 0;
+        recording = true;
+    }
+
+    synchronized void tickStarting(Board board, boolean inGame) {
+        if (!recording) {
+            return;
+        }
+        if (!inGame) {
+            finish(); // Quit between ticks
+            return;
+        }
+        if (ticks == 0) {
+            ghostTargeting = ghostTargeting.clone(); // Settled by now, even if set after the board was made
+        }
+        if (ticks % KEYFRAME_INTERVAL == 0) {
+            addKeyframe(board);
+        }
+    }
+
+    synchronized void tickEnded(int reqDX, int reqDY, boolean inGame, int score) {
+        if (!recording) {
+            return;
+        }
+        if (ticks == inputs.length) {
+            inputs = Arrays.copyOf(inputs, ticks * 2);
+        }
+        inputs[ticks++] = (byte) (direction(reqDX, reqDY) | (levelStarted ? LEVEL_START : 0));
+        levelStarted = false;
+        this.score = score;
+        if (!inGame) {
+            finish();
+        }
+    }
+
+    /** Hands the game under way, if any, to the archive as it stands. */
+    synchronized void finish() {
+        if (!recording) {
+            return;
+        }
+        recording = false;
+        if (ticks > 0) {
+            archive.record(packText, seed, ghostTargeting, score, inputs, ticks,
+                           keyframes, keyframeOffsets, keyframeCount);
+        }
+    }
+
+    private void addKeyframe(Board board) {
+        if (state == null) {
+            state = board.newState();
+        }
+        board.saveState(state);
+        int n = board.getTileCount();
+        if (tiles.length < n) {
+            tiles = new byte[n];
+        }
+        board.copyTiles(tiles);
+
+        int size = 8 + 4 + Board.State.bytes(state.ghostX.length) + n;
+        if (keyframes.remaining() < size) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(keyframes.capacity() * 2, keyframes.position() + size));
+            keyframes.flip();
+            keyframes = bigger.put(keyframes);
+        }
+        if (keyframeCount == keyframeOffsets.length) {
+            keyframeOffsets = Arrays.copyOf(keyframeOffsets, keyframeCount * 2);
+        }
+        keyframeOffsets[keyframeCount++] = keyframes.position();
+        keyframes.putLong(board.checksum()).putInt(n);
+        state.writeTo(keyframes);
+        keyframes.put(tiles, 0, n);
+    }
+
+    static int direction(int dx, int dy) {
+        for (int d = 0; d < NO_DIRECTION; d++) {
+            if (Autopilot.DIR_X[d] == dx && Autopilot.DIR_Y[d] == dy) {
+                return d;
+            }
+        }
+        return NO_DIRECTION;
+    }
+}
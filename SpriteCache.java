@@ -0,0 +1,103 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Pac-Man and ghost sprites pre-rendered for one tile size in device pixels.
+ *
+ * Board's shapes are vector drawings in a 20-pixel tile. Filling those arcs and round rects
+ * every frame gets expensive once a big or HiDPI window scales them up, so each distinct pose
+ * is drawn once, the first time it is needed, and afterwards just copied to the screen. Board
+ * replaces the cache when its tile size changes, i.e. when the window is resized or moved to
+ * a screen with a different scale.
+ */
+class SpriteCache {
+
+    static final int NONE = 0, RIGHT = 1, LEFT = 2, UP = 3, DOWN = 4; // Facing
+    private static final int MARGIN = 4;      // Logical pixels around the tile for shapes that overhang it
+    private static final int MAX_MOUTH = 45;  // Board's widest mouth angle
+    private static final int MAX_WAVE = 2;    // Board's ghost skirt wobble is -2..2
+
+    final int tilePx;       // Device pixels per tile
+    final double scale;     // Device pixels per logical pixel
+    final int offset;       // Add to a tile's corner to get its sprite's corner (the margin, negative)
+    private final int size; // Sprite width and height
+    private final GraphicsConfiguration gc;
+
+    private final BufferedImage[][] pacman = new BufferedImage[5][MAX_MOUTH + 1]; // [facing][mouth angle]
+    private final BufferedImage[][][] ghosts;                                      // [ghost][facing][wave]
+    private final BufferedImage[][] frightened = new BufferedImage[2][2 * MAX_WAVE + 1]; // [flash][wave]
+
+    SpriteCache(int tilePx, int nGhosts, GraphicsConfiguration gc) {
+        this.tilePx = tilePx;
+        this.scale = tilePx / (double) Board.TILE_SIZE;
+        int margin = (int) Math.ceil(MARGIN * scale);
+        this.offset = -margin;
+        this.size = tilePx + 2 * margin;
+        this.gc = gc;
+        ghosts = new BufferedImage[nGhosts][5][2 * MAX_WAVE + 1];
+    }
+
+    BufferedImage pacman(int facing, int mouthAngle) {
+        BufferedImage img = pacman[facing][mouthAngle];
+        if (img == null) {
+            int startAngle = 0;
+            if (facing == RIGHT) {
+                startAngle = mouthAngle;
+            } else if (facing == LEFT) {
+                startAngle = 180 + mouthAngle;
+            } else if (facing == UP) {
+                startAngle = 90 + mouthAngle;
+            } else if (facing == DOWN) {
+                startAngle = 270 + mouthAngle;
+            }
+            img = newImage(size, size, false);
+            Graphics2D g = begin(img);
+            Board.paintPacman(g, Board.TILE_SIZE / 2, Board.TILE_SIZE / 2, startAngle, 360 - mouthAngle * 2);
+            g.dispose();
+            pacman[facing][mouthAngle] = img;
+        }
+        return img;
+    }
+
+    BufferedImage ghost(int ghost, int facing, int waveOffset) {
+        BufferedImage img = ghosts[ghost][facing][waveOffset + MAX_WAVE];
+        if (img == null) {
+            img = newImage(size, size, false);
+            Graphics2D g = begin(img);
+            Board.paintGhost(g, Board.TILE_SIZE / 2, Board.TILE_SIZE / 2, ghost, false, false, facing, waveOffset);
+            g.dispose();
+            ghosts[ghost][facing][waveOffset + MAX_WAVE] = img;
+        }
+        return img;
+    }
+
+    BufferedImage frightenedGhost(boolean flash, int waveOffset) {
+        int f = flash ? 1 : 0;
+        BufferedImage img = frightened[f][waveOffset + MAX_WAVE];
+        if (img == null) {
+            img = newImage(size, size, false);
+            Graphics2D g = begin(img);
+            Board.paintGhost(g, Board.TILE_SIZE / 2, Board.TILE_SIZE / 2, 0, true, flash, NONE, waveOffset);
+            g.dispose();
+            frightened[f][waveOffset + MAX_WAVE] = img;
+        }
+        return img;
+    }
+
+    // Opaque layers are faster to copy; sprites need alpha
+    BufferedImage newImage(int width, int height, boolean opaque) {
+        if (gc != null) {
+            return gc.createCompatibleImage(width, height, opaque ? Transparency.OPAQUE : Transparency.TRANSLUCENT);
+        }
+        return new BufferedImage(width, height, opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB_PRE);
+    }
+
+    // Graphics for drawing into a sprite in Board's logical tile coordinates
+    private Graphics2D begin(BufferedImage img) {
+        Graphics2D g = img.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.translate(-offset, -offset);
+        g.scale(scale, scale);
+        return g;
+    }
+}
@@ -0,0 +1,391 @@
+import javax.swing.Timer;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.KeyEvent;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Two-player versus mode over TCP: one player is Pac-Man, the other steers a ghost.
+ *
+ * Both sides run the whole game and only send each other their inputs. Each input is for a
+ * tick INPUT_DELAY ticks ahead, which hides a little latency. When the other side's input for
+ * a tick hasn't arrived yet it is predicted to be the same as their last one and the game goes
+ * on. If an input then turns out different, the game is restored to the saved state from
+ * before that tick and the ticks since are run again with the right inputs. A state is a few
+ * dozen fields plus an undo journal of eaten dots (see Board.State), so saving one every tick
+ * and re-running a dozen ticks takes microseconds. Running more than MAX_ROLLBACK ticks ahead
+ * of the other side pauses the game instead.
+ *
+ * With every input each side also sends the checksum of its state after the latest tick both
+ * inputs were known for. A checksum that doesn't match means the two games have diverged,
+ * and the match stops.
+ *
+ * The host plays Pac-Man and sends the maze and random seed, so both sides run the same game.
+ */
+class VersusSession implements ActionListener, AutoCloseable {
+
+    static final int DEFAULT_PORT = 7777;
+    static final int CONTROLLED_GHOST = 0;   // Blinky
+
+    private static final int MAGIC = 0x50414356;   // "PACV"
+    private static final int PROTOCOL = 1;
+    private static final int INPUT_DELAY = 2;
+    private static final int MAX_ROLLBACK = 16;
+    private static final int RING = 64;            // Ticks of history kept; must exceed 2 * (MAX_ROLLBACK + INPUT_DELAY)
+    private static final int NO_INPUT = 4;         // Otherwise a direction index into DX/DY
+    private static final int[] DX = {-1, 1, 0, 0};
+    private static final int[] DY = {0, 0, -1, 1};
+
+    private final Board board;
+    private final boolean pacmanSide;
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final Consumer<String> status;
+    private final Timer timer;
+    private GameMetrics.Session metrics; // null when not reported
+
+    // Per tick, indexed by tick % RING. Game thread only unless noted.
+    private final int[] localInputs = new int[RING];
+    private final int[] usedRemote = new int[RING];     // Remote input the tick was last run with
+    private final Board.State[] states = new Board.State[RING]; // State before the tick
+    private final long[] checksums = new long[RING];     // State after the tick
+
+    // Written by the reader thread, published by remoteTick
+    private final int[] remoteInputs = new int[RING];
+    private final long[] remoteSumTicks = new long[RING];
+    private final long[] remoteSums = new long[RING];
+    private final AtomicLong remoteTick = new AtomicLong(INPUT_DELAY - 1); // Last tick whose remote input arrived
+
+    // Outgoing packets, game thread -> sender thread: tick << 8 | input, checksum tick, checksum
+    private final long[] sendRing = new long[RING * 3];
+    private final AtomicLong sendHead = new AtomicLong();
+    private final AtomicLong sendTail = new AtomicLong();
+
+    private long tick;                  // Next tick to run
+    private long seenRemote = INPUT_DELAY - 1; // Remote inputs up to here have been checked against predictions
+    private long pendingSumTick = -1;   // A remote checksum for a tick we haven't confirmed yet
+    private long pendingSum;
+    private long lastCompared = -1;
+    private int localDirection = NO_INPUT; // Latest arrow key, set on the EDT
+    private long rollbacks, rolledBackTicks, stalls;
+    private volatile boolean finished;
+    private final Thread reader;
+    private final Thread sender;
+
+    private VersusSession(Board board, boolean pacmanSide, Socket socket, DataInputStream in,
+                          DataOutputStream out, Consumer<String> status) {
+        this.board = board;
+        this.pacmanSide = pacmanSide;
+        this.socket = socket;
+        this.in = in;
+        this.out = out;
+        this.status = status;
+        for (int i = 0; i < RING; i++) {
+            states[i] = board.newState();
+            localInputs[i] = NO_INPUT;
+            remoteInputs[i] = NO_INPUT;
+            remoteSumTicks[i] = -1;
+        }
+        board.setVersus(this, CONTROLLED_GHOST);
+        timer = new Timer(board.getTickMillis(), this);
+
+        reader = new Thread(this::readLoop, "versus-reader");
+        reader.setDaemon(true);
+        sender = new Thread(this::sendLoop, "versus-sender");
+        sender.setDaemon(true);
+    }
+
+    /** Waits for a player to join on port, then plays Pac-Man on the given maze. */
+    static VersusSession host(int port, String[] levelData, Consumer<String> status) throws IOException {
+        Socket socket;
+        try (ServerSocket server = new ServerSocket(port)) {
+            status.accept("Versus: waiting for a player on port " + port);
+            socket = server.accept();
+        }
+        socket.setTcpNoDelay(true);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+        long seed = System.nanoTime();
+        out.writeInt(MAGIC);
+        out.writeInt(PROTOCOL);
+        out.writeLong(seed);
+        out.writeInt(levelData.length);
+        for (String row : levelData) {
+            out.writeUTF(row);
+        }
+        out.flush();
+        if (in.readInt() != MAGIC) {
+            socket.close();
+            throw new IOException("Not a Pac-Man versus client");
+        }
+        return new VersusSession(newBoard(levelData, seed), true, socket, in, out, status);
+    }
+
+    /** Joins a host and plays the ghost. */
+    static VersusSession join(String host, int port, Consumer<String> status) throws IOException {
+        Socket socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        if (in.readInt() != MAGIC || in.readInt() != PROTOCOL) {
+            socket.close();
+            throw new IOException("Not a Pac-Man versus host, or a different version");
+        }
+        long seed = in.readLong();
+        String[] levelData = new String[in.readInt()];
+        for (int i = 0; i < levelData.length; i++) {
+            levelData[i] = in.readUTF();
+        }
+        out.writeInt(MAGIC);
+        out.flush();
+        return new VersusSession(newBoard(levelData, seed), false, socket, in, out, status);
+    }
+
+    private static Board newBoard(String[] levelData, long seed) {
+        Board board = new Board(LevelPack.single(levelData), false);
+        board.setSeed(seed);
+        board.newGame();
+        return board;
+    }
+
+    Board getBoard() {
+        return board;
+    }
+
+    void setMetrics(GameMetrics.Session metrics) {
+        this.metrics = metrics;
+        board.setMetrics(metrics);
+    }
+
+    void start() {
+        reader.start();
+        sender.start();
+        timer.start();
+        status.accept("Versus: you are " + (pacmanSide ? "Pac-Man" : "the red ghost"));
+    }
+
+    // Called from Board's key handler on the EDT
+    void keyPressed(int key) {
+        if (key == KeyEvent.VK_LEFT) {
+            localDirection = 0;
+        } else if (key == KeyEvent.VK_RIGHT) {
+            localDirection = 1;
+        } else if (key == KeyEvent.VK_UP) {
+            localDirection = 2;
+        } else if (key == KeyEvent.VK_DOWN) {
+            localDirection = 3;
+        } else if (key == KeyEvent.VK_ESCAPE) {
+            end("Versus: you left the match");
+        }
+    }
+
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        if (!finished) {
+            step();
+        }
+        board.requestFrame();
+    }
+
+    // One timer tick: fix up mispredictions, then run the next tick unless too far ahead
+    private void step() {
+        long confirmed = remoteTick.get();
+        if (metrics != null) {
+            metrics.setInputQueueDepth((int) Math.max(confirmed - tick + 1, 0)); // Remote inputs not yet played
+        }
+
+        // Earliest tick that ran with a wrong guess of the remote input
+        long firstWrong = -1;
+        for (long t = seenRemote + 1; t <= confirmed && t < tick; t++) {
+            if (usedRemote[slot(t)] != remoteInputs[slot(t)]) {
+                firstWrong = t;
+                break;
+            }
+        }
+        if (firstWrong >= 0) {
+            board.restoreState(states[slot(firstWrong)]);
+            board.setReplaying(true);
+            for (long t = firstWrong; t < tick; t++) {
+                run(t, confirmed);
+            }
+            board.setReplaying(false);
+            rollbacks++;
+            rolledBackTicks += tick - firstWrong;
+        }
+
+        // Checksums that came with the new inputs; ours are final now the rollback is done
+        for (long t = seenRemote + 1; t <= confirmed; t++) {
+            if (remoteSumTicks[slot(t)] >= 0) {
+                checkRemoteSum(remoteSumTicks[slot(t)], remoteSums[slot(t)], Math.min(confirmed, tick - 1));
+            }
+        }
+        seenRemote = confirmed;
+        if (pendingSumTick >= 0) {
+            checkRemoteSum(pendingSumTick, pendingSum, Math.min(confirmed, tick - 1));
+        }
+        if (finished) {
+            return;
+        }
+
+        if (!board.isInGame() || board.isLevelCleared()) {
+            // Over as far as we know; final once no remote input can change it
+            if (confirmed >= tick - 1) {
+                end(board.isLevelCleared() == pacmanSide ? "Versus: you win!" : "Versus: you lose");
+            }
+            return;
+        }
+        if (tick - confirmed > MAX_ROLLBACK) {
+            stalls++; // Waiting for the other side
+            return;
+        }
+
+        localInputs[slot(tick + INPUT_DELAY)] = localDirection;
+        long sumTick = Math.min(confirmed, tick - 1);
+        send(tick + INPUT_DELAY, localDirection, sumTick, sumTick >= 0 ? checksums[slot(sumTick)] : 0);
+        run(tick, confirmed);
+        tick++;
+    }
+
+    // Runs one tick with the known or predicted inputs, saving the state before it
+    private void run(long t, long confirmed) {
+        int slot = slot(t);
+        board.saveState(states[slot]);
+        int remote = t <= confirmed ? remoteInputs[slot] : remoteInputs[slot(confirmed)];
+        usedRemote[slot] = remote;
+
+        int pacmanInput = pacmanSide ? localInputs[slot] : remote;
+        int ghostInput = pacmanSide ? remote : localInputs[slot];
+        if (pacmanInput != NO_INPUT) {
+            board.setRequestedDirection(DX[pacmanInput], DY[pacmanInput]);
+        }
+        if (ghostInput != NO_INPUT) {
+            board.setGhostRequest(DX[ghostInput], DY[ghostInput]);
+        }
+        board.tick();
+        checksums[slot] = board.checksum();
+    }
+
+    // Compares the other side's checksum for a tick with ours, once our result for it is final
+    private void checkRemoteSum(long sumTick, long sum, long ourConfirmed) {
+        if (sumTick <= lastCompared || sumTick <= tick - RING) {
+            pendingSumTick = -1;
+            return; // Already checked, or too old to still have
+        }
+        if (sumTick > ourConfirmed) {
+            pendingSumTick = sumTick; // Keep the newest; check it when we get there
+            pendingSum = sum;
+            return;
+        }
+        pendingSumTick = -1;
+        lastCompared = sumTick;
+        if (checksums[slot(sumTick)] != sum) {
+            end("Versus: games out of sync at tick " + sumTick + ", match stopped");
+        }
+    }
+
+    private void end(String message) {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        timer.stop();
+        board.stopSounds();
+        status.accept(message);
+        System.err.printf("%s (ticks %d, rollbacks %d, re-run ticks %d, stalls %d)%n",
+                message, tick, rollbacks, rolledBackTicks, stalls);
+        close();
+    }
+
+    @Override
+    public void close() {
+        finished = true;
+        if (metrics != null) {
+            metrics.close();
+        }
+        LockSupport.unpark(sender);
+        try {
+            socket.close(); // Unblocks the reader
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static int slot(long t) {
+        return (int) (t & (RING - 1));
+    }
+
+    private void send(long inputTick, int input, long sumTick, long sum) {
+        long h = sendHead.get();
+        if (h - sendTail.get() >= RING) {
+            end("Versus: connection stalled");
+            return;
+        }
+        int i = (int) (h % RING) * 3;
+        sendRing[i] = inputTick << 8 | input;
+        sendRing[i + 1] = sumTick;
+        sendRing[i + 2] = sum;
+        sendHead.lazySet(h + 1);
+        LockSupport.unpark(sender);
+    }
+
+    private void sendLoop() {
+        try {
+            while (!finished) {
+                long t = sendTail.get();
+                long h = sendHead.get();
+                if (t == h) {
+                    LockSupport.park();
+                    continue;
+                }
+                for (; t < h; t++) {
+                    int i = (int) (t % RING) * 3;
+                    out.writeLong(sendRing[i]);
+                    out.writeLong(sendRing[i + 1]);
+                    out.writeLong(sendRing[i + 2]);
+                }
+                sendTail.lazySet(t);
+                out.flush();
+            }
+        } catch (IOException e) {
+            if (!finished) {
+                javax.swing.SwingUtilities.invokeLater(() -> end("Versus: connection lost"));
+            }
+        }
+    }
+
+    private void readLoop() {
+        try {
+            while (true) {
+                long packet = in.readLong();
+                long sumTick = in.readLong();
+                long sum = in.readLong();
+                long inputTick = packet >>> 8;
+                if (inputTick != remoteTick.get() + 1) {
+                    throw new IOException("Out of order input for tick " + inputTick);
+                }
+                int slot = slot(inputTick);
+                remoteInputs[slot] = (int) (packet & 0xFF);
+                remoteSumTicks[slot] = sumTick;
+                remoteSums[slot] = sum;
+                remoteTick.lazySet(inputTick); // Publishes the slot to the game thread
+            }
+        } catch (EOFException e) {
+            javax.swing.SwingUtilities.invokeLater(() -> end("Versus: the other player left"));
+        } catch (IOException e) {
+            if (!finished) {
+                javax.swing.SwingUtilities.invokeLater(() -> end("Versus: connection lost: " + e.getMessage()));
+            }
+        }
+    }
+}